@@ -0,0 +1,68 @@
+package com.training.blog.benchmarks;
+
+import com.training.blog.BlogApplication;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.services.PostBatchService;
+import com.training.blog.services.UserService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//boots the application without a web server against its own in-memory H2 and seeds it
+final class BenchmarkApplication {
+    private static final int BATCH = 10_000;
+
+    private BenchmarkApplication(){}
+
+    static ConfigurableApplicationContext start(String database, String... properties){
+        List<String> all = new ArrayList<>(List.of(
+                "spring.datasource.url=jdbc:h2:mem:" + database,
+                "logging.level.root=WARN"));
+        all.addAll(List.of(properties));
+        return new SpringApplicationBuilder(BlogApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(all.toArray(new String[0]))
+                .run();
+    }
+
+    static List<Long> seed(ConfigurableApplicationContext context, int authors, int posts){
+        return seed(context, authors, posts, 0);
+    }
+
+    //spreads the posts evenly over the authors and returns the authors' ids, bodyLength 0 keeps the default body
+    static List<Long> seed(ConfigurableApplicationContext context, int authors, int posts, int bodyLength){
+        UserService userService = context.getBean(UserService.class);
+        PostBatchService postBatchService = context.getBean(PostBatchService.class);
+        List<Long> authorIds = new ArrayList<>();
+        for(int i = 0; i < authors; i++){
+            authorIds.add(userService.createUser(new User("benchmark-author-" + i)).getId());
+        }
+        int perAuthor = posts / authors;
+        for(int author = 0; author < authors; author++){
+            for(int from = 0; from < perAuthor; from += BATCH){
+                List<Post> batch = new ArrayList<>();
+                for(int i = from; i < Math.min(from + BATCH, perAuthor); i++){
+                    Post post = post("benchmark " + author + "-" + i);
+                    if(bodyLength > 0){
+                        post.setBody(post.getBody().repeat(bodyLength / post.getBody().length() + 1).substring(0, bodyLength));
+                    }
+                    batch.add(post);
+                }
+                postBatchService.createPosts(batch, authorIds.get(author));
+            }
+        }
+        return authorIds;
+    }
+
+    static Post post(String title){
+        Post post = new Post();
+        post.setTitle(title);
+        post.setBody("Body of " + title + ". Lorem ipsum dolor sit amet, consectetur adipiscing elit, " +
+                "sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.");
+        return post;
+    }
+}
@@ -0,0 +1,73 @@
+package com.training.blog.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.training.blog.pagination.PageQuery;
+import com.training.blog.services.PostService;
+import com.training.blog.services.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//entity lists against summary projections: the service call plus serialization, as a request pays for it.
+//allocations per request come from the gc profiler (gc.alloc.rate.norm), response bytes are printed at setup
+//run with: ./mvnw -Pjmh test-compile exec:exec -Djmh.include=PostListBenchmark -Djmh.args="-prof gc"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostListBenchmark {
+    private static final int POSTS = 20_000;
+    //the body column is a varchar(255), seed it full
+    private static final int BODY_LENGTH = 255;
+
+    @Param({"20", "100"})
+    public int limit;
+
+    private ConfigurableApplicationContext context;
+    private PostService postService;
+    private UserService userService;
+    private ObjectMapper objectMapper;
+    private Long authorId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        context = BenchmarkApplication.start("postlistbench" + limit);
+        List<Long> authors = BenchmarkApplication.seed(context, 4, POSTS, BODY_LENGTH);
+        postService = context.getBean(PostService.class);
+        userService = context.getBean(UserService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        authorId = authors.get(0);
+        System.out.printf("%nresponse bytes at limit %d: posts=%d summaries=%d userPosts=%d userPostSummaries=%d%n", limit,
+                postsPage().length, postSummariesPage().length, userPostsPage().length, userPostSummariesPage().length);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] postsPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(postService.getPosts(new PageQuery(null, limit)));
+    }
+
+    @Benchmark
+    public byte[] postSummariesPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(postService.getPostSummaries(new PageQuery(null, limit)));
+    }
+
+    @Benchmark
+    public byte[] userPostsPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(userService.getUserPosts(authorId, new PageQuery(null, limit)));
+    }
+
+    @Benchmark
+    public byte[] userPostSummariesPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(userService.getUserPostSummaries(authorId, new PageQuery(null, limit)));
+    }
+}
@@ -0,0 +1,95 @@
+package com.training.blog.benchmarks;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.training.blog.models.Post;
+import com.training.blog.pagination.PageQuery;
+import com.training.blog.pagination.PageResponse;
+import com.training.blog.repository.PostKey;
+import com.training.blog.repository.PostRepository;
+import com.training.blog.services.PostService;
+import com.training.blog.services.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.ResolvableType;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//service and repository hot paths against an embedded H2 seeded with `posts` posts over 10 authors
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostServiceBenchmark {
+    private static final int AUTHORS = 10;
+
+    @Param({"1000", "100000"})
+    public int posts;
+
+    private ConfigurableApplicationContext context;
+    private PostService postService;
+    private UserService userService;
+    private PostRepository postRepository;
+    private Cache<Long, Post> postCache;
+    private long[] postIds;
+    private Long authorId;
+    private final AtomicLong created = new AtomicLong();
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp(){
+        context = BenchmarkApplication.start("postservicebench" + posts);
+        List<Long> authors = BenchmarkApplication.seed(context, AUTHORS, posts);
+        postService = context.getBean(PostService.class);
+        userService = context.getBean(UserService.class);
+        postRepository = context.getBean(PostRepository.class);
+        postCache = (Cache<Long, Post>) context.getBeanProvider(
+                ResolvableType.forClassWithGenerics(Cache.class, Long.class, Post.class)).getObject();
+        authorId = authors.get(0);
+        postIds = authors.stream()
+                .flatMap(author -> postRepository.findKeysByAuthorId(author).stream())
+                .mapToLong(PostKey::getId)
+                .toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        context.close();
+    }
+
+    @Benchmark
+    public Post getPostCached(){
+        return postService.getPost(randomPostId());
+    }
+
+    @Benchmark
+    public Post getPostUncached(){
+        Long id = randomPostId();
+        postCache.invalidate(id);
+        return postService.getPost(id);
+    }
+
+    @Benchmark
+    public Optional<Post> repositoryFindById(){
+        return postRepository.findById(randomPostId());
+    }
+
+    @Benchmark
+    public Post createPost(){
+        return postService.createPost(BenchmarkApplication.post("created " + created.incrementAndGet()), authorId);
+    }
+
+    @Benchmark
+    public PageResponse<Post> getUserPostsFirstPage(){
+        return userService.getUserPosts(authorId, new PageQuery(null, 20));
+    }
+
+    private Long randomPostId(){
+        return postIds[ThreadLocalRandom.current().nextInt(postIds.length)];
+    }
+}
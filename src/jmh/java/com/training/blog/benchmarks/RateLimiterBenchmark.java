@@ -0,0 +1,59 @@
+package com.training.blog.benchmarks;
+
+import com.training.blog.exceptions.RateLimitExceededException;
+import com.training.blog.ratelimit.RateLimiter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//what the admission check adds to a write request with 8 threads at once: every thread posting as the
+//same user from the same client (all CASes on the same two buckets), every thread its own user and client,
+//and a client that is over its limit and only gets turned away
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class RateLimiterBenchmark {
+
+    private RateLimiter rateLimiter;
+
+    @State(Scope.Thread)
+    public static class Caller {
+        private static final AtomicInteger THREADS = new AtomicInteger();
+
+        final String userId = Integer.toString(THREADS.incrementAndGet());
+        final String client = "10.0.0." + userId;
+    }
+
+    @Setup
+    public void setUp(){
+        rateLimiter = new RateLimiter(Map.of(
+                "open", new RateLimiter.Limit(1e8, 100_000_000),
+                "closed", new RateLimiter.Limit(1e-3, 1)), 100_000);
+    }
+
+    @Benchmark
+    public void sameUserAndClient(){
+        rateLimiter.acquire("open", "1", "10.0.0.1");
+    }
+
+    @Benchmark
+    public void ownUserAndClient(Caller caller){
+        rateLimiter.acquire("open", caller.userId, caller.client);
+    }
+
+    @Benchmark
+    public Object overTheLimit(){
+        try {
+            rateLimiter.acquire("closed", "1", "10.0.0.1");
+            return null;
+        } catch (RateLimitExceededException ex){
+            return ex;
+        }
+    }
+}
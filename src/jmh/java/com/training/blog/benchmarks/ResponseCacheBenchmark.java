@@ -0,0 +1,70 @@
+package com.training.blog.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.training.blog.cache.ResponseCache;
+import com.training.blog.models.Post;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+//what GET /api/posts/{id} spends on the body once the post itself is cached: serializing (and
+//compressing) it on every request against handing out the bytes kept in the response cache.
+//run with -prof gc to see the allocation per request as well
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseCacheBenchmark {
+
+    @Param({"200", "4000"})
+    public int bodyLength;
+
+    private ObjectMapper objectMapper;
+    private ResponseCache responseCache;
+    private Post post;
+
+    @Setup
+    public void setUp(){
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        responseCache = new ResponseCache(objectMapper, DataSize.ofMegabytes(64), Duration.ofMinutes(10),
+                DataSize.ofBytes(256));
+        post = BenchmarkApplication.post("cached response");
+        post.setId(1L);
+        post.setVersion(3L);
+        post.setBody("lorem ipsum dolor sit amet ".repeat(bodyLength / 27 + 1).substring(0, bodyLength));
+    }
+
+    @Benchmark
+    public byte[] serializeEveryRequest() throws IOException {
+        return objectMapper.writeValueAsBytes(post);
+    }
+
+    @Benchmark
+    public byte[] serializeAndGzipEveryRequest() throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(post);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)){
+            out.write(json);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> cachedJson(){
+        return responseCache.get("post", 1L, 3L, () -> post, Post::getVersion).toResponse(null);
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> cachedGzip(){
+        return responseCache.get("post", 1L, 3L, () -> post, Post::getVersion).toResponse("gzip, deflate, br");
+    }
+}
@@ -0,0 +1,65 @@
+package com.training.blog.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.pagination.PageResponse;
+import com.training.blog.pagination.Cursors;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Jackson cost of the list responses, with an ObjectMapper built the way Spring Boot builds it
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"20", "100"})
+    public int size;
+
+    private ObjectMapper objectMapper;
+    private PageResponse<Post> postPage;
+    private PageResponse<User> userPage;
+    private Post post;
+
+    @Setup
+    public void setUp(){
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        List<Post> posts = new ArrayList<>();
+        List<User> users = new ArrayList<>();
+        for(long id = 1; id <= size; id++){
+            Post item = BenchmarkApplication.post("serialized " + id);
+            item.setId(id);
+            posts.add(item);
+            User user = new User("serialized-user-" + id);
+            user.setId(id);
+            users.add(user);
+        }
+        post = posts.get(0);
+        postPage = new PageResponse<>(posts, Cursors.encode((long) size));
+        userPage = new PageResponse<>(users, Cursors.encode((long) size));
+    }
+
+    @Benchmark
+    public byte[] serializePost() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(post);
+    }
+
+    @Benchmark
+    public byte[] serializePostPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(postPage);
+    }
+
+    @Benchmark
+    public byte[] serializeUserPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(userPage);
+    }
+}
@@ -21,6 +21,10 @@ public class BlogApplication {
 	@Bean
 	CommandLineRunner commandLineRunner(PostRepository postRepository, UserRepository userRepository){
 		return args -> {
+			//durable storage still has the sample from an earlier start
+			if(userRepository.count() > 0){
+				return;
+			}
 			User user = new User();
 			user.setUsername("pa6ata");
 			userRepository.save(user);
@@ -0,0 +1,66 @@
+package com.training.blog.batch;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+
+    public enum Status { CREATED, INVALID, DUPLICATE, FAILED }
+
+    //position of the item in the request
+    private int index;
+    private Status status;
+    private Long id;
+    private List<String> errors;
+
+    public BatchItemResult(){}
+
+    public BatchItemResult(int index, Status status, Long id, List<String> errors){
+        this.index = index;
+        this.status = status;
+        this.id = id;
+        this.errors = errors;
+    }
+
+    public static BatchItemResult created(int index, Long id){
+        return new BatchItemResult(index, Status.CREATED, id, null);
+    }
+
+    public static BatchItemResult failed(int index, Status status, List<String> errors){
+        return new BatchItemResult(index, status, null, errors);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+}
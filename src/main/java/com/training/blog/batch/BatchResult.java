@@ -0,0 +1,43 @@
+package com.training.blog.batch;
+
+import java.util.List;
+
+public class BatchResult {
+    private int created;
+    private int failed;
+    private List<BatchItemResult> items;
+
+    public BatchResult(){}
+
+    public BatchResult(List<BatchItemResult> items){
+        this.items = items;
+        this.created = (int) items.stream()
+                .filter(item -> item.getStatus() == BatchItemResult.Status.CREATED)
+                .count();
+        this.failed = items.size() - created;
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public void setCreated(int created) {
+        this.created = created;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public List<BatchItemResult> getItems() {
+        return items;
+    }
+
+    public void setItems(List<BatchItemResult> items) {
+        this.items = items;
+    }
+}
@@ -0,0 +1,36 @@
+package com.training.blog.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+//read-through caches for single entity lookups, evicted with W-TinyLFU by Caffeine
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    Cache<Long, Post> postCache(@Value("${blog.cache.posts.maximum-size:10000}") long maximumSize,
+                                @Value("${blog.cache.posts.expire-after-write:10m}") Duration expireAfterWrite){
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    @Bean
+    Cache<Long, User> userCache(@Value("${blog.cache.users.maximum-size:10000}") long maximumSize,
+                                @Value("${blog.cache.users.expire-after-write:10m}") Duration expireAfterWrite){
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+}
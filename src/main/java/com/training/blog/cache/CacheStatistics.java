@@ -0,0 +1,65 @@
+package com.training.blog.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+public class CacheStatistics {
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private double hitRate;
+
+    public CacheStatistics(){}
+
+    public static CacheStatistics of(Cache<?, ?> cache){
+        CacheStats stats = cache.stats();
+        CacheStatistics statistics = new CacheStatistics();
+        statistics.setSize(cache.estimatedSize());
+        statistics.setHits(stats.hitCount());
+        statistics.setMisses(stats.missCount());
+        statistics.setEvictions(stats.evictionCount());
+        statistics.setHitRate(stats.hitRate());
+        return statistics;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public void setEvictions(long evictions) {
+        this.evictions = evictions;
+    }
+
+    public double getHitRate() {
+        return hitRate;
+    }
+
+    public void setHitRate(double hitRate) {
+        this.hitRate = hitRate;
+    }
+}
@@ -0,0 +1,48 @@
+package com.training.blog.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//change counters behind the collection ETags, bumped after every committed post or user write,
+//so an unchanged list is answered with 304 before any query runs
+@Component
+public class ResourceVersions {
+    //the counters start over on restart, the epoch keeps tags from an earlier run from matching
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong posts = new AtomicLong();
+    private final AtomicLong users = new AtomicLong();
+
+    public void postsChanged(){
+        posts.incrementAndGet();
+    }
+
+    public void usersChanged(){
+        users.incrementAndGet();
+    }
+
+    public String postsTag(){
+        return "\"posts-" + epoch + "-" + posts.get() + "\"";
+    }
+
+    public String usersTag(){
+        return "\"users-" + epoch + "-" + users.get() + "\"";
+    }
+
+    public static String etag(String kind, Long id, Long version){
+        return "\"" + kind + "-" + id + "-" + version + "\"";
+    }
+
+    //reads the version back out of an If-Match tag made by etag(), null if it isn't one of ours for this id
+    public static Long versionOf(String etag, String kind, Long id){
+        String prefix = "\"" + kind + "-" + id + "-";
+        if(etag == null || !etag.startsWith(prefix) || !etag.endsWith("\"")){
+            return null;
+        }
+        try {
+            return Long.valueOf(etag.substring(prefix.length(), etag.length() - 1));
+        } catch (NumberFormatException ex){
+            return null;
+        }
+    }
+}
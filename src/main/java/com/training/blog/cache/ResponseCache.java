@@ -0,0 +1,97 @@
+package com.training.blog.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+//serialized bodies of single resource GETs, so a hit skips Jackson and gzip altogether. an entry
+//remembers the version it was serialized from and only answers for that version, a write the
+//invalidation missed costs a re-serialization but never serves a stale body.
+//bounded by the bytes held rather than by the number of entries
+@Component
+public class ResponseCache {
+
+    private final ObjectMapper objectMapper;
+    private final Cache<ResourceKey, SerializedResponse> responses;
+    private final long gzipMinSize;
+
+    public ResponseCache(ObjectMapper objectMapper,
+                         @Value("${blog.cache.responses.maximum-size:64MB}") DataSize maximumSize,
+                         @Value("${blog.cache.responses.expire-after-access:10m}") Duration expireAfterAccess,
+                         @Value("${blog.cache.responses.gzip-min-size:256B}") DataSize gzipMinSize){
+        this.objectMapper = objectMapper;
+        this.gzipMinSize = gzipMinSize.toBytes();
+        this.responses = Caffeine.newBuilder()
+                .maximumWeight(maximumSize.toBytes())
+                .weigher((ResourceKey key, SerializedResponse response) -> response.weight())
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+    }
+
+    //a load that raced an edit can come back older than the version asked for, so the body is tagged
+    //with the version of the entity it was serialized from and only answers requests for that one
+    public <T> SerializedResponse get(String kind, Long id, Long version, Supplier<T> loader,
+                                      Function<T, Long> versionOf){
+        ResourceKey key = new ResourceKey(kind, id);
+        SerializedResponse cached = responses.getIfPresent(key);
+        if(cached != null && cached.version().equals(version)){
+            return cached;
+        }
+        T body = loader.get();
+        SerializedResponse serialized = serialize(versionOf.apply(body), body);
+        //a slow reader must not replace a newer body with the one it serialized
+        responses.asMap().merge(key, serialized,
+                (current, fresh) -> current.version() > fresh.version() ? current : fresh);
+        return serialized;
+    }
+
+    public void invalidate(String kind, Long id){
+        responses.invalidate(new ResourceKey(kind, id));
+    }
+
+    public void invalidateAll(String kind, Collection<Long> ids){
+        responses.invalidateAll(ids.stream().map(id -> new ResourceKey(kind, id)).toList());
+    }
+
+    public CacheStatistics statistics(){
+        return CacheStatistics.of(responses);
+    }
+
+    private SerializedResponse serialize(Long version, Object body){
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException ex){
+            throw new IllegalStateException("Could not serialize " + body.getClass().getSimpleName(), ex);
+        }
+        byte[] gzip = json.length < gzipMinSize ? null : gzip(json);
+        //small documents can come out larger compressed
+        return new SerializedResponse(version, json, gzip != null && gzip.length < json.length ? gzip : null);
+    }
+
+    private static byte[] gzip(byte[] json){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length / 2 + 32);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)){
+            out.write(json);
+        } catch (IOException ex){
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    private record ResourceKey(String kind, Long id) {}
+}
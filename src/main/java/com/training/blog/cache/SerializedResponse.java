@@ -0,0 +1,62 @@
+package com.training.blog.cache;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+//one resource serialized once, as plain JSON and, when it pays off, gzipped. the arrays are handed to
+//the response as they are, the byte array converter writes them without copying or encoding anything
+public record SerializedResponse(Long version, byte[] json, byte[] gzip) {
+
+    //array headers and the record itself, so tiny entries still weigh something
+    private static final int OVERHEAD = 64;
+
+    public int weight(){
+        return OVERHEAD + json.length + (gzip == null ? 0 : gzip.length);
+    }
+
+    public ResponseEntity<byte[]> toResponse(String acceptEncoding){
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if(gzip != null && acceptsGzip(acceptEncoding)){
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(gzip);
+        }
+        return response.body(json);
+    }
+
+    //any gzip token that isn't explicitly refused with q=0. one with a q-value that isn't a number is
+    //skipped, the plain body is always acceptable
+    static boolean acceptsGzip(String acceptEncoding){
+        if(acceptEncoding == null){
+            return false;
+        }
+        for(String coding : acceptEncoding.split(",")){
+            String[] parts = coding.trim().split(";");
+            if(!parts[0].trim().equalsIgnoreCase("gzip")){
+                continue;
+            }
+            Boolean accepted = accepted(parts);
+            if(accepted != null){
+                return accepted;
+            }
+        }
+        return false;
+    }
+
+    //null when the q-value can't be read
+    private static Boolean accepted(String[] parts){
+        for(int i = 1; i < parts.length; i++){
+            String param = parts[i].replace(" ", "");
+            if(param.startsWith("q=")){
+                try {
+                    return Double.parseDouble(param.substring(2)) != 0;
+                } catch (NumberFormatException ex){
+                    return null;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,18 @@
+package com.training.blog.changes;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+//one committed write, resource is "post" or "user" like in the ETags. the id is what clients send back
+//as Last-Event-ID, the sequence only orders events within one run of the application
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ChangeEvent(String id, @JsonIgnore long sequence, String resource, ChangeType type,
+                          Long resourceId, Long version, Instant at) {
+
+    //the SSE event name, e.g. post.created
+    public String name(){
+        return resource + "." + type.name().toLowerCase();
+    }
+}
@@ -0,0 +1,18 @@
+package com.training.blog.changes;
+
+import java.io.IOException;
+
+//where a subscriber's events are written to, an SSE response outside of tests. every method is called
+//from the subscriber's own sender thread, never from the writer or the dispatcher
+public interface ChangeSink {
+
+    void send(ChangeEvent event) throws IOException;
+
+    //the events since the client's Last-Event-ID are no longer all in the replay log, it has to re-read
+    void reset() throws IOException;
+
+    //keeps idle connections open through proxies and finds the dead ones
+    void heartbeat() throws IOException;
+
+    void close();
+}
@@ -0,0 +1,288 @@
+package com.training.blog.changes;
+
+import com.training.blog.exceptions.ChangeStreamFullException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//committed post and user writes for GET /api/changes. a writer only appends to the replay log and hands
+//the event to the dispatcher thread, which copies it into every subscriber's bounded buffer. each
+//subscriber is written to by its own sender task, so a slow one only holds up itself. one whose buffer
+//fills up is disconnected and can resume with Last-Event-ID from the replay log
+@Component
+public class ChangeStream implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeStream.class);
+
+    //event ids are "<epoch>-<sequence>", the epoch tells an id from before a restart
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final ChangeEvent[] replay;
+    private final Object appendLock = new Object();
+    private long sequence;
+
+    private final BlockingQueue<ChangeEvent> pending = new LinkedBlockingQueue<>();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    //slots taken by subscribers, given back when one leaves the list
+    private final AtomicInteger open = new AtomicInteger();
+    private final ExecutorService senders = Executors.newCachedThreadPool(new CustomizableThreadFactory("change-sender-"));
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private volatile Thread dispatcher;
+
+    public ChangeStream(@Value("${blog.changes.replay-size:10000}") int replaySize,
+                        @Value("${blog.changes.buffer-size:256}") int bufferSize,
+                        @Value("${blog.changes.max-subscribers:1000}") int maxSubscribers){
+        this.replay = new ChangeEvent[replaySize];
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    //inside a transaction the event waits for the commit and is dropped on rollback
+    public void publish(String resource, ChangeType type, Long resourceId, Long version){
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit(){
+                    append(resource, type, resourceId, version);
+                }
+            });
+        }else{
+            append(resource, type, resourceId, version);
+        }
+    }
+
+    public void publishAll(String resource, ChangeType type, Collection<Long> resourceIds){
+        resourceIds.forEach(id -> publish(resource, type, id, null));
+    }
+
+    //lastEventId is the client's Last-Event-ID, null to only get what happens from now on.
+    //run what it returns when the client goes away
+    public Runnable subscribe(String lastEventId, ChangeSink sink){
+        //the slot is taken in one step, so concurrent subscribers can't get past the limit together
+        if(open.getAndUpdate(count -> count < maxSubscribers ? count + 1 : count) >= maxSubscribers){
+            throw new ChangeStreamFullException(maxSubscribers);
+        }
+        Subscriber subscriber = new Subscriber(sink);
+        synchronized (appendLock){
+            //nothing can be appended in between, so the replay and the live events neither overlap nor leave a gap
+            long from = resumeAfter(lastEventId);
+            long oldest = Math.max(1, sequence - replay.length + 1);
+            if(from < 0 || from + 1 < oldest){
+                subscriber.reset = true;
+                from = sequence;
+            }
+            for(long next = from + 1; next <= sequence; next++){
+                subscriber.backlog.add(replay[slot(next)]);
+            }
+            subscriber.lastQueued = sequence;
+            subscribers.add(subscriber);
+        }
+        subscriber.schedule();
+        return subscriber::disconnect;
+    }
+
+    public int subscriberCount(){
+        return subscribers.size();
+    }
+
+    @Scheduled(fixedDelayString = "${blog.changes.heartbeat-interval:PT15S}",
+            initialDelayString = "${blog.changes.heartbeat-interval:PT15S}")
+    public void heartbeat(){
+        for(Subscriber subscriber : subscribers){
+            subscriber.heartbeatDue = true;
+            subscriber.schedule();
+        }
+    }
+
+    @Override
+    public void start(){
+        dispatcher = new Thread(this::dispatch, "change-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    //open streams are closed before the web server waits for requests to finish, see getPhase
+    @Override
+    public void stop(){
+        Thread current = dispatcher;
+        dispatcher = null;
+        if(current != null){
+            current.interrupt();
+        }
+        subscribers.forEach(Subscriber::disconnect);
+        senders.shutdown();
+    }
+
+    @Override
+    public boolean isRunning(){
+        return dispatcher != null;
+    }
+
+    //above the web server's graceful shutdown, which waits for open requests and so for every stream
+    @Override
+    public int getPhase(){
+        return WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE + 512;
+    }
+
+    private void append(String resource, ChangeType type, Long resourceId, Long version){
+        synchronized (appendLock){
+            long next = ++sequence;
+            ChangeEvent event = new ChangeEvent(epoch + "-" + next, next, resource, type, resourceId, version, Instant.now());
+            replay[slot(next)] = event;
+            pending.add(event);
+        }
+    }
+
+    private void dispatch(){
+        List<ChangeEvent> batch = new ArrayList<>();
+        while (dispatcher != null){
+            try {
+                batch.add(pending.take());
+            } catch (InterruptedException ex){
+                return;
+            }
+            pending.drainTo(batch);
+            for(Subscriber subscriber : subscribers){
+                subscriber.deliver(batch);
+            }
+            batch.clear();
+        }
+    }
+
+    //the sequence the client saw last, -1 when the id isn't from this run
+    private long resumeAfter(String lastEventId){
+        if(lastEventId == null){
+            return sequence;
+        }
+        int separator = lastEventId.lastIndexOf('-');
+        if(separator < 0 || !lastEventId.substring(0, separator).equals(epoch)){
+            return -1;
+        }
+        try {
+            long seen = Long.parseLong(lastEventId.substring(separator + 1));
+            return seen <= sequence ? seen : -1;
+        } catch (NumberFormatException ex){
+            return -1;
+        }
+    }
+
+    private int slot(long sequence){
+        return (int) (sequence % replay.length);
+    }
+
+    private final class Subscriber {
+
+        private final ChangeSink sink;
+        private final BlockingQueue<ChangeEvent> buffer = new ArrayBlockingQueue<>(bufferSize);
+        //replayed events, filled before the sender first runs and only read by it
+        private final Queue<ChangeEvent> backlog = new ArrayDeque<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        //only touched by the dispatcher once subscribed, skips what the replay already covered
+        private long lastQueued;
+        private boolean reset;
+        private volatile boolean heartbeatDue;
+        private volatile boolean closed;
+
+        Subscriber(ChangeSink sink){
+            this.sink = sink;
+        }
+
+        //never blocks, a subscriber that can't take the events is let go
+        void deliver(List<ChangeEvent> events){
+            for(ChangeEvent event : events){
+                if(event.sequence() <= lastQueued){
+                    continue;
+                }
+                if(!buffer.offer(event)){
+                    log.info("Disconnecting a change stream subscriber {} events behind", buffer.size());
+                    disconnect();
+                    return;
+                }
+                lastQueued = event.sequence();
+            }
+            schedule();
+        }
+
+        //the sender closes the sink, it may be stuck writing to it right now
+        void disconnect(){
+            if(closed){
+                return;
+            }
+            closed = true;
+            leave();
+            schedule();
+        }
+
+        //the disconnect and a failed send can both get here, only the first one gives the slot back
+        private void leave(){
+            if(subscribers.remove(this)){
+                open.decrementAndGet();
+            }
+        }
+
+        void schedule(){
+            if(scheduled.compareAndSet(false, true)){
+                try {
+                    senders.execute(this::send);
+                } catch (RuntimeException ex){
+                    //shutting down
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        private void send(){
+            try {
+                do {
+                    if(closed){
+                        sink.close();
+                        return;
+                    }
+                    if(reset){
+                        reset = false;
+                        sink.reset();
+                    }
+                    ChangeEvent event;
+                    while (!closed && ((event = backlog.poll()) != null || (event = buffer.poll()) != null)){
+                        sink.send(event);
+                        heartbeatDue = false;
+                    }
+                    if(heartbeatDue && !closed){
+                        heartbeatDue = false;
+                        sink.heartbeat();
+                    }
+                    scheduled.set(false);
+                    //anything that arrived after the last poll but before the flag was cleared
+                } while ((closed || !buffer.isEmpty()) && scheduled.compareAndSet(false, true));
+            } catch (IOException | RuntimeException ex){
+                //the client went away, scheduled stays set so nothing runs for it again
+                closed = true;
+                leave();
+                sink.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.training.blog.changes;
+
+public enum ChangeType {
+    CREATED, UPDATED, DELETED
+}
@@ -0,0 +1,45 @@
+package com.training.blog.changes;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+//writes a subscriber's events to its GET /api/changes response
+public class SseChangeSink implements ChangeSink {
+
+    private final SseEmitter emitter;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public SseChangeSink(SseEmitter emitter){
+        this.emitter = emitter;
+    }
+
+    @Override
+    public void send(ChangeEvent event) throws IOException {
+        emitter.send(SseEmitter.event()
+                .id(event.id())
+                .name(event.name())
+                .data(event, MediaType.APPLICATION_JSON));
+    }
+
+    @Override
+    public void reset() throws IOException {
+        emitter.send(SseEmitter.event()
+                .name("reset")
+                .data("Events since Last-Event-ID are no longer available, re-read what you keep"));
+    }
+
+    @Override
+    public void heartbeat() throws IOException {
+        emitter.send(SseEmitter.event().comment("heartbeat"));
+    }
+
+    @Override
+    public void close(){
+        if(closed.compareAndSet(false, true)){
+            emitter.complete();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.training.blog.config;
+
+import com.training.blog.ratelimit.RateLimitInterceptor;
+import com.training.blog.ratelimit.RateLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Map;
+
+//blog.ratelimit.groups.<group>.rate (tokens per second) and .burst limit the handlers marked @RateLimited("<group>"),
+//blog.ratelimit.enabled=false turns admission control off
+@Configuration
+@ConditionalOnProperty(name = "blog.ratelimit.enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimitConfig implements WebMvcConfigurer {
+
+    private final RateLimiter rateLimiter;
+
+    public RateLimitConfig(Environment environment, @Value("${blog.ratelimit.max-keys:100000}") long maxKeys){
+        Map<String, RateLimiter.Limit> limits = Binder.get(environment).bind("blog.ratelimit.groups",
+                Bindable.mapOf(String.class, RateLimiter.Limit.class)).orElse(Map.of());
+        this.rateLimiter = new RateLimiter(limits, maxKeys);
+    }
+
+    @Bean
+    RateLimiter rateLimiter(){
+        return rateLimiter;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry){
+        registry.addInterceptor(new RateLimitInterceptor(rateLimiter)).addPathPatterns("/api/**");
+    }
+}
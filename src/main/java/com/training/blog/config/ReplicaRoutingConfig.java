@@ -0,0 +1,69 @@
+package com.training.blog.config;
+
+import com.training.blog.routing.ReadYourWritesFilter;
+import com.training.blog.routing.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+//blog.datasource.replicas[n].url (plus username/password) adds read replicas next to spring.datasource,
+//@Transactional(readOnly = true) work is then spread over them. each replica gets its own pool with the
+//spring.datasource.hikari settings
+@Configuration
+@ConditionalOnProperty(name = "blog.datasource.replicas[0].url")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource primaryDataSource(DataSourceProperties properties){
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource, Environment environment,
+                                                      @Value("${blog.datasource.sticky-window:5s}") Duration stickyWindow)
+            throws Exception {
+        Binder binder = Binder.get(environment);
+        List<DataSourceProperties> configured = binder.bind("blog.datasource.replicas",
+                Bindable.listOf(DataSourceProperties.class)).orElse(List.of());
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for(DataSourceProperties properties : configured){
+            properties.afterPropertiesSet();
+            HikariDataSource replica = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(replica));
+            replica.setPoolName(primaryDataSource.getPoolName() + "-replica-" + (replicas.size() + 1));
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, stickyWindow);
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource){
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    @Bean
+    FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+            @Value("${blog.datasource.sticky-window:5s}") Duration stickyWindow){
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(stickyWindow));
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
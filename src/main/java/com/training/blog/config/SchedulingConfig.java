@@ -0,0 +1,10 @@
+package com.training.blog.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+//background jobs such as the author statistics reconcile
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,42 @@
+package com.training.blog.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+//blog.threads.virtual.enabled=true serves requests, streaming exports and other async work on virtual threads
+@Configuration
+@ConditionalOnProperty(name = "blog.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsConfig {
+
+    @Bean
+    TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer(){
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    //replaces the auto-configured pool that MVC uses for StreamingResponseBody
+    @Bean(name = "applicationTaskExecutor")
+    AsyncTaskExecutor applicationTaskExecutor(){
+        return new TaskExecutorAdapter(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    //with no thread pool to cap them, requests would queue up inside Hikari instead,
+    //so only let as many in as the connection pool can serve with a little queueing
+    @Bean
+    FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            @Value("${blog.threads.virtual.max-concurrent-requests:40}") int maxConcurrentRequests,
+            @Value("${blog.threads.virtual.acquire-timeout:5s}") Duration acquireTimeout){
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration =
+                new FilterRegistrationBean<>(new ConcurrencyLimitFilter(maxConcurrentRequests, acquireTimeout));
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
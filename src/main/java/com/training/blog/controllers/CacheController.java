@@ -0,0 +1,38 @@
+package com.training.blog.controllers;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.training.blog.cache.CacheStatistics;
+import com.training.blog.cache.ResponseCache;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController @RequestMapping("/api/cache")
+public class CacheController {
+
+    private final Cache<Long, Post> postCache;
+    private final Cache<Long, User> userCache;
+    private final ResponseCache responseCache;
+
+    public CacheController(Cache<Long, Post> postCache, Cache<Long, User> userCache,
+                           ResponseCache responseCache){
+        this.postCache = postCache;
+        this.userCache = userCache;
+        this.responseCache = responseCache;
+    }
+
+    @GetMapping("/stats")
+    ResponseEntity<Map<String, CacheStatistics>> getStats(){
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(Map.of(
+                        "posts", CacheStatistics.of(postCache),
+                        "users", CacheStatistics.of(userCache),
+                        "responses", responseCache.statistics()));
+    }
+}
@@ -0,0 +1,37 @@
+package com.training.blog.controllers;
+
+import com.training.blog.changes.ChangeStream;
+import com.training.blog.changes.SseChangeSink;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+
+@RestController @RequestMapping("/api/changes")
+public class ChangeController {
+
+    private final ChangeStream changeStream;
+    private final Duration timeout;
+
+    public ChangeController(ChangeStream changeStream,
+                            @Value("${blog.changes.timeout:30m}") Duration timeout){
+        this.changeStream = changeStream;
+        this.timeout = timeout;
+    }
+
+    //an EventSource reconnects on its own after the timeout and sends the id of the last event it got
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    SseEmitter subscribe(@RequestHeader(name = "Last-Event-ID", required = false) String lastEventId){
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Runnable cancel = changeStream.subscribe(lastEventId, new SseChangeSink(emitter));
+        emitter.onCompletion(cancel);
+        emitter.onTimeout(cancel);
+        emitter.onError(ex -> cancel.run());
+        return emitter;
+    }
+}
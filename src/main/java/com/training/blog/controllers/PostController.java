@@ -1,42 +1,163 @@
 package com.training.blog.controllers;
 
+import com.training.blog.batch.BatchResult;
+import com.training.blog.cache.ResourceVersions;
+import com.training.blog.cache.ResponseCache;
+import com.training.blog.cache.SerializedResponse;
 import com.training.blog.exceptions.PostNotFoundException;
+import com.training.blog.exceptions.VersionRequiredException;
+import com.training.blog.feed.FeedEntry;
+import com.training.blog.ingest.PostIngestion;
 import com.training.blog.models.Post;
-import com.training.blog.repository.PostRepository;
+import com.training.blog.multiget.MultiGetResponse;
+import com.training.blog.patch.PostPatch;
+import com.training.blog.pagination.PageQuery;
+import com.training.blog.pagination.PageResponse;
+import com.training.blog.ratelimit.RateLimited;
+import com.training.blog.imports.ImportSummary;
+import com.training.blog.repository.EntityVersion;
+import com.training.blog.repository.PostSummary;
+import com.training.blog.services.ExportService;
+import com.training.blog.services.ImportService;
+import com.training.blog.services.PostBatchService;
+import com.training.blog.services.PostIngestService;
 import com.training.blog.services.PostService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.util.List;
 
+
 @RestController @RequestMapping("/api/posts")
 public class PostController {
 
-    private final PostRepository postRepository;
-
     private final PostService postService;
 
-    public PostController(PostRepository postRepository,
-                          PostService postService){
-        this.postRepository = postRepository;
+    private final PostBatchService postBatchService;
+
+    private final ExportService exportService;
+
+    private final ImportService importService;
+
+    private final ResourceVersions resourceVersions;
+
+    private final ResponseCache responseCache;
+
+    private final PostIngestService postIngestService;
+
+    public PostController(PostService postService, PostBatchService postBatchService,
+                          ExportService exportService, ImportService importService,
+                          ResourceVersions resourceVersions, ResponseCache responseCache,
+                          PostIngestService postIngestService){
         this.postService = postService;
+        this.postBatchService = postBatchService;
+        this.exportService = exportService;
+        this.importService = importService;
+        this.resourceVersions = resourceVersions;
+        this.responseCache = responseCache;
+        this.postIngestService = postIngestService;
     }
 
+    //pass `page` to fall back to offset paging, otherwise follow the `next` cursor
+    //the ETag changes with any post write, so an unchanged page is a 304 without a query
     @GetMapping("")
-    ResponseEntity<List<Post>> getAllPosts(){
+    ResponseEntity<PageResponse<Post>> getAllPosts(PageQuery query, WebRequest request){
+        if(request.checkNotModified(resourceVersions.postsTag())){
+            return null;
+        }
         return ResponseEntity.status(HttpStatus.OK)
-                .body(postRepository.findAll());
+                .body(postService.getPosts(query));
     }
 
-    @GetMapping("/{post_id}")
-    ResponseEntity<Post> getPost(@PathVariable Long post_id){
-        Post post = postService.getPost(post_id);
+    //?view=summary: id, title, authorId and a short excerpt instead of whole posts, same paging
+    @GetMapping(value = "", params = "view=summary")
+    ResponseEntity<PageResponse<PostSummary>> getPostSummaries(PageQuery query, WebRequest request){
+        if(request.checkNotModified(resourceVersions.postsTag())){
+            return null;
+        }
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(postService.getPostSummaries(query));
+    }
+
+    //?ids=3,1,2: those posts in one round trip, in the order asked for. ids that don't exist are listed
+    //under missing instead of failing the whole request
+    @GetMapping(value = "", params = "ids")
+    ResponseEntity<MultiGetResponse<Post>> getPostsByIds(@RequestParam List<Long> ids, WebRequest request){
+        if(request.checkNotModified(resourceVersions.postsTag())){
+            return null;
+        }
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(postService.getPostsByIds(ids));
+    }
+
+    //latest posts across all authors, newest first. follow `next` for older ones
+    @GetMapping("/feed")
+    ResponseEntity<PageResponse<FeedEntry>> getFeed(PageQuery query, WebRequest request){
+        if(request.checkNotModified(resourceVersions.postsTag())){
+            return null;
+        }
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(postService.getFeed(query));
+    }
+
+    //streams every post as one JSON object per line, nothing is collected in memory first
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    ResponseEntity<StreamingResponseBody> exportPosts(){
+        StreamingResponseBody body = exportService::exportPosts;
+        return ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    //one {"title", "body", "author"} object per line, the author is a username
+    @RateLimited("imports")
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    ResponseEntity<ImportSummary> importPosts(InputStream body) throws IOException {
+        ImportSummary summary = importService.importPosts(body);
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(summary);
+    }
+
+    @GetMapping("/search")
+    ResponseEntity<List<Post>> searchPosts(@RequestParam(name = "q") String query,
+                                           @RequestParam(required = false) Integer limit,
+                                           WebRequest request){
+        if(request.checkNotModified(resourceVersions.postsTag())){
+            return null;
+        }
         return ResponseEntity.status(HttpStatus.OK)
-                .body(post);
+                .body(postService.searchPosts(query, limit));
     }
 
+    //If-None-Match / If-Modified-Since are answered from the version columns, the body isn't loaded
+    @GetMapping("/{post_id}")
+    ResponseEntity<byte[]> getPost(@PathVariable Long post_id, WebRequest request, HttpServletResponse response){
+        EntityVersion version = postService.getPostVersion(post_id);
+        if(request.checkNotModified(ResourceVersions.etag("post", post_id, version.version()),
+                version.lastModifiedMillis())){
+            return null;
+        }
+        //the body is serialized once per version and then written out as it is
+        SerializedResponse body = responseCache.get("post", post_id, version.version(), () -> postService.getPost(post_id),
+                Post::getVersion);
+        if(!body.version().equals(version.version())){
+            //a load that raced an edit is sent under the tag of the version it read
+            response.setHeader(HttpHeaders.ETAG, ResourceVersions.etag("post", post_id, body.version()));
+        }
+        return body.toResponse(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    @RateLimited("posts")
     @PostMapping("/{user_id}")
     ResponseEntity<Post> createPost (@RequestBody @Valid Post post,
                      @PathVariable(name = "user_id") Long id){
@@ -45,13 +166,63 @@ public class PostController {
                 .body(createdPost);
     }
 
+    //?async=true: checked and queued, then written together with whatever else is queued.
+    //the Location header points at the outcome
+    @RateLimited("posts")
+    @PostMapping(value = "/{user_id}", params = "async=true")
+    ResponseEntity<PostIngestion> createPostAsync(@RequestBody @Valid Post post,
+                                                  @PathVariable(name = "user_id") Long id){
+        PostIngestion ingestion = postIngestService.submit(post, id);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(URI.create("/api/posts/ingestions/" + ingestion.getId()))
+                .body(ingestion);
+    }
+
+    @GetMapping("/ingestions/{ingestion_id}")
+    ResponseEntity<PostIngestion> getIngestion(@PathVariable(name = "ingestion_id") String id){
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(postIngestService.getIngestion(id));
+    }
+
+    //items are validated one by one so a bad item doesn't fail the rest, see the per-item results
+    @RateLimited("posts")
+    @PostMapping("/{user_id}/batch")
+    ResponseEntity<BatchResult> createPosts(@RequestBody List<Post> posts,
+                                            @PathVariable(name = "user_id") Long id){
+        BatchResult result = postBatchService.createPosts(posts, id);
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(result);
+    }
+
+    @RateLimited("writes")
     @PutMapping("/{post_id}")
     ResponseEntity<Post> updatePost(@RequestBody @Valid Post post,@PathVariable Long post_id){
+        post.setId(post_id);
         Post updatedPost = postService.editPost(post);
         return ResponseEntity.status(HttpStatus.OK)
                 .body(updatedPost);
     }
 
+    //only the fields sent are written, and only if the post is still at the version the client read
+    //(If-Match with the post's ETag, or a "version" field), 409 if someone else got there first
+    @RateLimited("writes")
+    @PatchMapping("/{post_id}")
+    ResponseEntity<Post> patchPost(@RequestBody @Valid PostPatch patch, @PathVariable Long post_id,
+                                   @RequestHeader(name = "If-Match", required = false) String ifMatch){
+        Long version = ResourceVersions.versionOf(ifMatch, "post", post_id);
+        if(version == null){
+            version = patch.getVersion();
+        }
+        if(version == null){
+            throw new VersionRequiredException();
+        }
+        Post patchedPost = postService.patchPost(post_id, patch, version);
+        return ResponseEntity.status(HttpStatus.OK)
+                .eTag(ResourceVersions.etag("post", post_id, patchedPost.getVersion()))
+                .body(patchedPost);
+    }
+
+    @RateLimited("writes")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @DeleteMapping("/{post_id}")
     void deletePost(@PathVariable Long post_id){
@@ -1,52 +1,151 @@
 package com.training.blog.controllers;
 
+import com.training.blog.cache.ResourceVersions;
+import com.training.blog.cache.ResponseCache;
+import com.training.blog.cache.SerializedResponse;
+import com.training.blog.deletion.UserDeletion;
 import com.training.blog.exceptions.NotUniqueException;
 import com.training.blog.exceptions.UserNotFoundException;
+import com.training.blog.exceptions.VersionRequiredException;
 import com.training.blog.models.Post;
 import com.training.blog.models.User;
+import com.training.blog.multiget.MultiGetResponse;
+import com.training.blog.patch.UserPatch;
+import com.training.blog.pagination.PageQuery;
+import com.training.blog.pagination.PageResponse;
+import com.training.blog.ratelimit.RateLimited;
+import com.training.blog.repository.EntityVersion;
 import com.training.blog.repository.PostRepository;
-import com.training.blog.repository.UserRepository;
+import com.training.blog.repository.PostSummary;
+import com.training.blog.imports.ImportSummary;
+import com.training.blog.services.ExportService;
+import com.training.blog.services.ImportService;
+import com.training.blog.services.UserDeletionService;
 import com.training.blog.services.UserService;
+import com.training.blog.stats.AuthorStats;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.util.List;
 
 @RestController @RequestMapping("/api/users")
 public class UserController {
 
-    private final UserRepository userRepository;
     private final UserService userService;
+    private final ExportService exportService;
+    private final ImportService importService;
+    private final ResourceVersions resourceVersions;
+    private final UserDeletionService userDeletionService;
+    private final ResponseCache responseCache;
 
-    public UserController(PostRepository postRepository, UserRepository userRepository,
-                          UserService userService){
-        this.userRepository = userRepository;
+    public UserController(PostRepository postRepository,
+                          UserService userService, ExportService exportService,
+                          ImportService importService, ResourceVersions resourceVersions,
+                          UserDeletionService userDeletionService, ResponseCache responseCache){
         this.userService = userService;
+        this.exportService = exportService;
+        this.importService = importService;
+        this.resourceVersions = resourceVersions;
+        this.userDeletionService = userDeletionService;
+        this.responseCache = responseCache;
     }
 
+    //the ETag changes with any user write, so an unchanged page is a 304 without a query
     @GetMapping("")
-    ResponseEntity<List<User>> getAllUsers(){
+    ResponseEntity<PageResponse<User>> getAllUsers(PageQuery query, WebRequest request){
+        if(request.checkNotModified(resourceVersions.usersTag())){
+            return null;
+        }
         return ResponseEntity.status(HttpStatus.OK)
-                .body(userRepository.findAll());
+                .body(userService.getUsers(query));
     }
 
+    //?ids=3,1,2: those users in the order asked for, ids that don't exist are listed under missing
+    @GetMapping(value = "", params = "ids")
+    ResponseEntity<MultiGetResponse<User>> getUsersByIds(@RequestParam List<Long> ids, WebRequest request){
+        if(request.checkNotModified(resourceVersions.usersTag())){
+            return null;
+        }
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(userService.getUsersByIds(ids));
+    }
 
-    @GetMapping("/{user_id}")
-    ResponseEntity<User> getUser(@PathVariable(name = "user_id") Long id){
-        User user = userService.getUser(id);
+    //streams every user as one JSON object per line, nothing is collected in memory first
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    ResponseEntity<StreamingResponseBody> exportUsers(){
+        StreamingResponseBody body = exportService::exportUsers;
+        return ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    //one {"username"} object per line
+    @RateLimited("imports")
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    ResponseEntity<ImportSummary> importUsers(InputStream body) throws IOException {
+        ImportSummary summary = importService.importUsers(body);
         return ResponseEntity.status(HttpStatus.OK)
-                .body(user);
+                .body(summary);
+    }
+
+    @GetMapping("/{user_id}")
+    ResponseEntity<byte[]> getUser(@PathVariable(name = "user_id") Long id, WebRequest request,
+                                   HttpServletResponse response){
+        EntityVersion version = userService.getUserVersion(id);
+        if(request.checkNotModified(ResourceVersions.etag("user", id, version.version()),
+                version.lastModifiedMillis())){
+            return null;
+        }
+        SerializedResponse body = responseCache.get("user", id, version.version(), () -> userService.getUser(id),
+                User::getVersion);
+        if(!body.version().equals(version.version())){
+            //a load that raced an edit is sent under the tag of the version it read
+            response.setHeader(HttpHeaders.ETAG, ResourceVersions.etag("user", id, body.version()));
+        }
+        return body.toResponse(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
     }
 
     @GetMapping("/{user_id}/posts")
-    ResponseEntity<List<Post>> getUserPosts(@PathVariable(name = "user_id")Long id){
-        List<Post> posts = userService.getUserPosts(id);
+    ResponseEntity<PageResponse<Post>> getUserPosts(@PathVariable(name = "user_id")Long id, PageQuery query,
+                                                    WebRequest request){
+        //deleting the user also bumps the posts counter, so the tag covers a vanished author too
+        if(request.checkNotModified(resourceVersions.postsTag())){
+            return null;
+        }
+        PageResponse<Post> posts = userService.getUserPosts(id, query);
         return ResponseEntity.status(HttpStatus.OK)
                 .body(posts);
     }
 
+    //?view=summary: id, title, authorId and a short excerpt instead of whole posts, same paging
+    @GetMapping(value = "/{user_id}/posts", params = "view=summary")
+    ResponseEntity<PageResponse<PostSummary>> getUserPostSummaries(@PathVariable(name = "user_id") Long id,
+                                                                   PageQuery query, WebRequest request){
+        if(request.checkNotModified(resourceVersions.postsTag())){
+            return null;
+        }
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(userService.getUserPostSummaries(id, query));
+    }
+
+    //post count and newest post id, kept as counters so this doesn't grow with the number of posts
+    @GetMapping("/{user_id}/stats")
+    ResponseEntity<AuthorStats> getUserStats(@PathVariable(name = "user_id") Long id){
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(userService.getUserStats(id));
+    }
+
+    @RateLimited("writes")
     @PostMapping("")
     ResponseEntity<User> createUser(@RequestBody @Valid User user){
         User createdUser = userService.createUser(user);
@@ -54,17 +153,55 @@ public class UserController {
                .body(createdUser);
     }
 
+    @RateLimited("writes")
     @PutMapping("/{user_id}")
-    ResponseEntity<User> userUpdate(@PathVariable(name = "user_id") Long id, @RequestBody User newUser){
+    ResponseEntity<User> userUpdate(@PathVariable(name = "user_id") Long id, @RequestBody @Valid User newUser){
         User updatedUser = userService.updateUser(newUser, id);
         return ResponseEntity.status(HttpStatus.OK)
                 .body(updatedUser);
     }
 
+    //only the fields sent are written, and only if the user is still at the version the client read
+    //(If-Match with the user's ETag, or a "version" field), 409 if someone else got there first
+    @RateLimited("writes")
+    @PatchMapping("/{user_id}")
+    ResponseEntity<User> patchUser(@PathVariable(name = "user_id") Long id, @RequestBody @Valid UserPatch patch,
+                                   @RequestHeader(name = "If-Match", required = false) String ifMatch){
+        Long version = ResourceVersions.versionOf(ifMatch, "user", id);
+        if(version == null){
+            version = patch.getVersion();
+        }
+        if(version == null){
+            throw new VersionRequiredException();
+        }
+        User patchedUser = userService.patchUser(id, patch, version);
+        return ResponseEntity.status(HttpStatus.OK)
+                .eTag(ResourceVersions.etag("user", id, patchedUser.getVersion()))
+                .body(patchedUser);
+    }
+
+    @RateLimited("writes")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @DeleteMapping("/{user_id}")
     void deleteUser(@PathVariable(name = "user_id") Long id){
         userService.deleteUser(id);
     }
 
+    //for users with many posts: the posts are deleted in small transactions in the background,
+    //follow the Location to see the progress
+    @RateLimited("writes")
+    @DeleteMapping(value = "/{user_id}", params = "async=true")
+    ResponseEntity<UserDeletion> deleteUserAsync(@PathVariable(name = "user_id") Long id){
+        UserDeletion deletion = userDeletionService.start(id);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(URI.create("/api/users/deletions/" + deletion.getId()))
+                .body(deletion);
+    }
+
+    @GetMapping("/deletions/{deletion_id}")
+    ResponseEntity<UserDeletion> getDeletion(@PathVariable(name = "deletion_id") String id){
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(userDeletionService.getDeletion(id));
+    }
+
 }
@@ -0,0 +1,76 @@
+package com.training.blog.deletion;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+//progress of a background user deletion, updated by the worker after every committed chunk
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserDeletion {
+
+    public enum Status { RUNNING, COMPLETED, FAILED }
+
+    private final String id;
+    private final Long userId;
+    //posts the user had when the deletion started
+    private final long postsTotal;
+    private final AtomicLong postsDeleted = new AtomicLong();
+    private final Instant startedAt = Instant.now();
+    private volatile Status status = Status.RUNNING;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    public UserDeletion(String id, Long userId, long postsTotal){
+        this.id = id;
+        this.userId = userId;
+        this.postsTotal = postsTotal;
+    }
+
+    public void recordDeleted(long posts){
+        postsDeleted.addAndGet(posts);
+    }
+
+    public void complete(){
+        finishedAt = Instant.now();
+        status = Status.COMPLETED;
+    }
+
+    public void fail(String error){
+        this.error = error;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public long getPostsTotal() {
+        return postsTotal;
+    }
+
+    public long getPostsDeleted() {
+        return postsDeleted.get();
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
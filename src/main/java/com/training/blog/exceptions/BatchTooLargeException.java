@@ -0,0 +1,9 @@
+package com.training.blog.exceptions;
+
+public class BatchTooLargeException extends RuntimeException{
+
+    public BatchTooLargeException(int size, int max){
+        super("Batch of " + size + " items is larger than the maximum of " + max + ".");
+    }
+
+}
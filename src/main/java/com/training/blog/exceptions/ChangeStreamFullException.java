@@ -0,0 +1,9 @@
+package com.training.blog.exceptions;
+
+public class ChangeStreamFullException extends RuntimeException{
+
+    public ChangeStreamFullException(int maxSubscribers){
+        super("The change stream already has " + maxSubscribers + " subscribers, retry later.");
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.training.blog.exceptions;
+
+public class DeletionNotFoundException extends RuntimeException{
+
+    public DeletionNotFoundException(String id){
+        super("Deletion with id:" + id + " not found.");
+    }
+
+}
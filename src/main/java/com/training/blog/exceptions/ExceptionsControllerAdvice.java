@@ -1,13 +1,18 @@
 package com.training.blog.exceptions;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.filter.ServerHttpObservationFilter;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -17,7 +22,8 @@ public class ExceptionsControllerAdvice {
     //when not using valid to validate aka checking if username is unique
     //this is done AFTER we have taken the request
     @ExceptionHandler(ConstraintViolationException.class)
-    ResponseEntity<ApiError> invalidInput(ConstraintViolationException ex){
+    ResponseEntity<ApiError> invalidInput(ConstraintViolationException ex, HttpServletRequest request){
+        observe(request, ex);
         ApiError error = new ApiError();
         List<String> errors = new ArrayList<>();
         for(ConstraintViolation<?> constraint: ex.getConstraintViolations()){
@@ -30,9 +36,14 @@ public class ExceptionsControllerAdvice {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
 
-    //when @Valid fails
-    @ExceptionHandler(MethodArgumentNotValidException.class)
-    ResponseEntity<ApiError> invalidInput(Exception ex){
+    //when @Valid fails, a paging cursor can't be decoded or a batch is over the limit
+    @ExceptionHandler({
+            MethodArgumentNotValidException.class,
+            InvalidCursorException.class,
+            BatchTooLargeException.class
+    })
+    ResponseEntity<ApiError> invalidInput(Exception ex, HttpServletRequest request){
+        observe(request, ex);
         ApiError error = new ApiError(HttpStatus.BAD_REQUEST, "INVALID_VALUES", ex.getMessage());
         error.setTime(LocalDateTime.now());
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
@@ -40,9 +51,12 @@ public class ExceptionsControllerAdvice {
     //da naprava error checkings da nqma ednakvi usernamove i postove s ednakvi titles
     @ExceptionHandler({
             UserNotFoundException.class,
-            PostNotFoundException.class
+            PostNotFoundException.class,
+            DeletionNotFoundException.class,
+            IngestionNotFoundException.class
     })
-    ResponseEntity<ApiError> userNotFoundExceptionAdvise(RuntimeException ex){
+    ResponseEntity<ApiError> userNotFoundExceptionAdvise(RuntimeException ex, HttpServletRequest request){
+        observe(request, ex);
         ApiError error = new ApiError();
         error.setMessage("OBJECT_NOT_FOUND");
         error.setStatus(HttpStatus.BAD_REQUEST);
@@ -52,7 +66,8 @@ public class ExceptionsControllerAdvice {
     }
 
     @ExceptionHandler(NotUniqueException.class)
-    ResponseEntity<ApiError> uniqueFieldNotUnique(NotUniqueException ex){
+    ResponseEntity<ApiError> uniqueFieldNotUnique(NotUniqueException ex, HttpServletRequest request){
+        observe(request, ex);
         ApiError error = new ApiError();
         error.setMessage("OBJECT_NOT_UNIQUE");
         error.setStatus(HttpStatus.CONFLICT);
@@ -62,5 +77,66 @@ public class ExceptionsControllerAdvice {
 
     }
 
+    //someone else updated the row since the client read it, the client has to re-read and retry
+    @ExceptionHandler({
+            VersionConflictException.class,
+            ObjectOptimisticLockingFailureException.class
+    })
+    ResponseEntity<ApiError> versionConflict(RuntimeException ex, HttpServletRequest request){
+        observe(request, ex);
+        ApiError error = new ApiError(HttpStatus.CONFLICT, "VERSION_CONFLICT", ex.getMessage());
+        error.setTime(LocalDateTime.now());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+
+    @ExceptionHandler(VersionRequiredException.class)
+    ResponseEntity<ApiError> versionRequired(VersionRequiredException ex, HttpServletRequest request){
+        observe(request, ex);
+        ApiError error = new ApiError(HttpStatus.PRECONDITION_REQUIRED, "VERSION_REQUIRED", ex.getMessage());
+        error.setTime(LocalDateTime.now());
+        return ResponseEntity.status(HttpStatus.PRECONDITION_REQUIRED).body(error);
+    }
 
+    //back-pressure from the async post queue, the client should slow down rather than give up
+    @ExceptionHandler(IngestionQueueFullException.class)
+    ResponseEntity<ApiError> ingestionQueueFull(IngestionQueueFullException ex, HttpServletRequest request){
+        observe(request, ex);
+        ApiError error = new ApiError(HttpStatus.SERVICE_UNAVAILABLE, "INGESTION_QUEUE_FULL", ex.getMessage());
+        error.setTime(LocalDateTime.now());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(error);
+    }
+
+    //every change stream slot is taken. the client only accepts text/event-stream, so the body's
+    //type is set here or no converter would be allowed to write it
+    @ExceptionHandler(ChangeStreamFullException.class)
+    ResponseEntity<ApiError> changeStreamFull(ChangeStreamFullException ex, HttpServletRequest request){
+        observe(request, ex);
+        ApiError error = new ApiError(HttpStatus.SERVICE_UNAVAILABLE, "CHANGE_STREAM_FULL", ex.getMessage());
+        error.setTime(LocalDateTime.now());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(error);
+    }
+
+    //the client (or user) is over its rate, Retry-After says when the next token is there
+    @ExceptionHandler(RateLimitExceededException.class)
+    ResponseEntity<ApiError> rateLimitExceeded(RateLimitExceededException ex, HttpServletRequest request){
+        observe(request, ex);
+        ApiError error = new ApiError(HttpStatus.TOO_MANY_REQUESTS, "TOO_MANY_REQUESTS", ex.getMessage());
+        error.setTime(LocalDateTime.now());
+        long seconds = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(seconds))
+                .body(error);
+    }
+
+    //handled exceptions never reach the observation filter, hand it the exception so
+    //http.server.requests gets tagged with its type instead of "none"
+    private void observe(HttpServletRequest request, Exception ex){
+        ServerHttpObservationFilter.findObservationContext(request)
+                .ifPresent(context -> context.setError(ex));
+    }
 }
@@ -0,0 +1,9 @@
+package com.training.blog.exceptions;
+
+public class IngestionNotFoundException extends RuntimeException{
+
+    public IngestionNotFoundException(String id){
+        super("Ingestion with id:" + id + " not found.");
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.training.blog.exceptions;
+
+public class IngestionQueueFullException extends RuntimeException{
+
+    public IngestionQueueFullException(int capacity){
+        super("The queue of " + capacity + " posts waiting to be written is full, retry later or post synchronously.");
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.training.blog.exceptions;
+
+public class InvalidCursorException extends RuntimeException{
+
+    public InvalidCursorException(String cursor){
+        super("Cursor '" + cursor + "' is not valid.");
+    }
+
+}
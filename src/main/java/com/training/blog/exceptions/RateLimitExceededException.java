@@ -0,0 +1,19 @@
+package com.training.blog.exceptions;
+
+import java.time.Duration;
+
+public class RateLimitExceededException extends RuntimeException{
+
+    private final Duration retryAfter;
+
+    //thrown for every request over the limit, so it skips filling in a stack trace nobody reads
+    public RateLimitExceededException(String group, Duration retryAfter){
+        super("Too many '" + group + "' requests, retry in " + Math.max(1, retryAfter.toMillis()) + " ms.",
+                null, false, false);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,9 @@
+package com.training.blog.exceptions;
+
+public class VersionConflictException extends RuntimeException{
+
+    public VersionConflictException(String type, Long id, Long version){
+        super(type + " with id:" + id + " is no longer at version " + version + ".");
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.training.blog.exceptions;
+
+public class VersionRequiredException extends RuntimeException{
+
+    public VersionRequiredException(){
+        super("Send the version being edited, as an If-Match ETag or a \"version\" field.");
+    }
+
+}
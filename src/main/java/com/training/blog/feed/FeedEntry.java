@@ -0,0 +1,19 @@
+package com.training.blog.feed;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.training.blog.models.Post;
+
+import java.time.Instant;
+
+//a post as the feed shows it, the excerpt is the same cut as in the summary lists. the version
+//only lets the feed tell an older edit from a newer one
+public record FeedEntry(Long id, String title, Long authorId, String excerpt, Instant createdAt,
+                        @JsonIgnore Long version) {
+
+    public static FeedEntry of(Post post, int excerptLength){
+        String body = post.getBody();
+        return new FeedEntry(post.getId(), post.getTitle(), post.getAuthor().getId(),
+                body.length() > excerptLength ? body.substring(0, excerptLength) : body,
+                post.getCreatedAt(), post.getVersion());
+    }
+}
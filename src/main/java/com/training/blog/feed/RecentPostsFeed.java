@@ -0,0 +1,259 @@
+package com.training.blog.feed;
+
+import com.training.blog.models.Post;
+import com.training.blog.pagination.PageLimits;
+import com.training.blog.pagination.TimeKey;
+import com.training.blog.repository.PostRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+
+//the newest posts across all authors, newest first, in a fixed-size ring so the first pages of the feed
+//are served from memory. it always holds the head of the feed without gaps: every post created at or after
+//its oldest entry is in it. a new post goes in at the front and pushes the oldest out at the back.
+//kept in sync by the services that write posts and backfilled from the database on startup.
+//readers don't take the lock, they copy what they need and then check that no writer got in between
+@Component
+public class RecentPostsFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(RecentPostsFeed.class);
+
+    private final PostRepository postRepository;
+    private final int excerptLength;
+    //the largest first page plus the entry after it that tells whether there is a next page
+    private final int minimumSize;
+    private final FeedEntry[] ring;
+    //posts taken out lately, so a writer that indexes a post after it was deleted can't bring it back.
+    //ids aren't reused, remembering the last ones is enough. only touched under the write lock
+    private final Set<Long> removed;
+    private final StampedLock lock = new StampedLock();
+
+    //the slot of the newest entry, the entry i places older is at (head + i) % ring.length
+    private int head;
+    private int size;
+    //no post is older than the oldest entry, true while the database has fewer posts than the ring holds
+    private boolean complete;
+    private boolean ready;
+
+    public RecentPostsFeed(PostRepository postRepository, PageLimits pageLimits,
+                           @Value("${blog.feed.capacity:1000}") int capacity,
+                           @Value("${blog.posts.excerpt-length:120}") int excerptLength){
+        this.postRepository = postRepository;
+        this.excerptLength = excerptLength;
+        this.minimumSize = pageLimits.getMaxLimit() + 1;
+        this.ring = new FeedEntry[Math.max(capacity, minimumSize * 2)];
+        int remembered = ring.length;
+        this.removed = Collections.newSetFromMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest){
+                return size() > remembered;
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill(){
+        long start = System.currentTimeMillis();
+        long stamp = lock.writeLock();
+        try {
+            load();
+            ready = true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        log.info("Loaded the {} newest posts into the feed in {} ms", size, System.currentTimeMillis() - start);
+    }
+
+    //up to limit + 1 entries after the cursor, from the top without one. the entry past limit only says
+    //there is a next page. null when the page reaches past what the ring holds, it has to be read from
+    //the database then
+    public List<FeedEntry> page(TimeKey after, int limit){
+        long stamp = lock.tryOptimisticRead();
+        if(stamp != 0){
+            List<FeedEntry> page = read(after, limit);
+            if(lock.validate(stamp)){
+                return page;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return read(after, limit);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //adds a new post or replaces an edited one, an edit that arrives after a newer one is dropped
+    public void index(Post post){
+        FeedEntry entry = FeedEntry.of(post, excerptLength);
+        long stamp = lock.writeLock();
+        try {
+            if(removed.contains(entry.id())){
+                return;
+            }
+            int at = indexOf(entry.id());
+            if(at < 0){
+                insert(entry);
+            }else if(isNewer(entry, slot(at))){
+                ring[physical(at)] = entry;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(Long postId){
+        removeAll(List.of(postId));
+    }
+
+    //when too few entries are left to serve a first page the ring is loaded again
+    public void removeAll(Collection<Long> postIds){
+        Set<Long> ids = new HashSet<>(postIds);
+        long stamp = lock.writeLock();
+        try {
+            removed.addAll(ids);
+            int kept = 0;
+            for(int i = 0; i < size; i++){
+                FeedEntry entry = slot(i);
+                if(!ids.contains(entry.id())){
+                    ring[physical(kept++)] = entry;
+                }
+            }
+            for(int i = kept; i < size; i++){
+                ring[physical(i)] = null;
+            }
+            size = kept;
+            if(ready && size < minimumSize && !complete){
+                load();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size(){
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //runs under the write lock. a write that committed before the query is in its result and one that
+    //commits after it waits for the lock and is applied on top, so none is lost either way
+    private void load(){
+        Slice<FeedEntry> newest = postRepository.findFeed(excerptLength, PageRequest.of(0, ring.length));
+        Arrays.fill(ring, null);
+        head = 0;
+        size = 0;
+        for(FeedEntry entry : newest){
+            ring[size++] = entry;
+        }
+        complete = !newest.hasNext();
+    }
+
+    //may run without the lock while a writer moves entries around, then whatever it returns is thrown
+    //away by the caller. it only has to stay inside the array and not trip over an emptied slot
+    private List<FeedEntry> read(TimeKey after, int limit){
+        if(!ready){
+            return null;
+        }
+        int count = size;
+        int from = after == null ? 0 : firstAfter(after, count);
+        if(from < 0){
+            return null;
+        }
+        List<FeedEntry> page = new ArrayList<>(limit + 1);
+        for(int i = from; i < count && page.size() <= limit; i++){
+            FeedEntry entry = slot(i);
+            if(entry == null){
+                return null;
+            }
+            page.add(entry);
+        }
+        //ran out of entries before the page was full, older posts may exist past the ring
+        if(page.size() <= limit && !complete){
+            return null;
+        }
+        return page;
+    }
+
+    //the entries are in feed order, so the first one after the key is found by binary search
+    private int firstAfter(TimeKey key, int count){
+        int low = 0;
+        int high = count;
+        while (low < high){
+            int mid = (low + high) >>> 1;
+            FeedEntry entry = slot(mid);
+            if(entry == null){
+                return -1;
+            }
+            if(key.isBefore(entry.createdAt(), entry.id())){
+                high = mid;
+            }else{
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    //usually at the front, a post whose transaction took longer than a newer one's goes a few places in
+    private void insert(FeedEntry entry){
+        int at = firstAfter(new TimeKey(entry.createdAt(), entry.id()), size);
+        if(at == size && (!complete || size == ring.length)){
+            //older than everything held, the database serves it. if the ring was complete it no longer is
+            complete = false;
+            return;
+        }
+        //the newer entries move one slot towards the front, when the ring is full the oldest is overwritten
+        int newHead = (head - 1 + ring.length) % ring.length;
+        for(int i = 0; i < at; i++){
+            ring[(newHead + i) % ring.length] = ring[(newHead + i + 1) % ring.length];
+        }
+        ring[(newHead + at) % ring.length] = entry;
+        head = newHead;
+        if(size < ring.length){
+            size++;
+        }else{
+            complete = false;
+        }
+    }
+
+    private int indexOf(Long postId){
+        for(int i = 0; i < size; i++){
+            if(slot(i).id().equals(postId)){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isNewer(FeedEntry entry, FeedEntry current){
+        return entry.version() == null || current.version() == null || entry.version() >= current.version();
+    }
+
+    private FeedEntry slot(int i){
+        return ring[physical(i)];
+    }
+
+    private int physical(int i){
+        return (head + i) % ring.length;
+    }
+}
@@ -0,0 +1,74 @@
+package com.training.blog.imports;
+
+import java.io.IOException;
+import java.io.Reader;
+
+//reads lines like BufferedReader.readLine, but keeps at most maxLength characters of a line. the rest of
+//a longer line is skipped without being held in memory and isTooLong() says it was cut
+public class BoundedLineReader {
+
+    private final Reader reader;
+    private final int maxLength;
+    private final char[] buffer = new char[8192];
+    private final StringBuilder line = new StringBuilder();
+    private int position;
+    private int limit;
+    //the last line ended with \r, a \n right after it belongs to the same terminator
+    private boolean skipLineFeed;
+    private boolean tooLong;
+
+    public BoundedLineReader(Reader reader, int maxLength){
+        this.reader = reader;
+        this.maxLength = maxLength;
+    }
+
+    //the next line without its terminator, null at the end of the input
+    public String readLine() throws IOException {
+        line.setLength(0);
+        tooLong = false;
+        boolean started = false;
+        while (true){
+            if(position == limit){
+                int read = reader.read(buffer);
+                if(read < 0){
+                    return started ? line.toString() : null;
+                }
+                position = 0;
+                limit = read;
+            }
+            if(skipLineFeed){
+                skipLineFeed = false;
+                if(buffer[position] == '\n'){
+                    position++;
+                    continue;
+                }
+            }
+            started = true;
+            int start = position;
+            while (position < limit && buffer[position] != '\n' && buffer[position] != '\r'){
+                position++;
+            }
+            append(start, position);
+            if(position < limit){
+                skipLineFeed = buffer[position] == '\r';
+                position++;
+                return line.toString();
+            }
+        }
+    }
+
+    //whether the line readLine returned last was longer than maxLength and got cut
+    public boolean isTooLong(){
+        return tooLong;
+    }
+
+    private void append(int start, int end){
+        int room = maxLength - line.length();
+        if(end - start > room){
+            tooLong = true;
+            line.append(buffer, start, Math.max(room, 0));
+        }else{
+            line.append(buffer, start, end - start);
+        }
+    }
+}
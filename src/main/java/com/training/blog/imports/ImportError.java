@@ -0,0 +1,30 @@
+package com.training.blog.imports;
+
+public class ImportError {
+    //1-based line number in the uploaded file
+    private long line;
+    private String message;
+
+    public ImportError(){}
+
+    public ImportError(long line, String message){
+        this.line = line;
+        this.message = message;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public void setLine(long line) {
+        this.line = line;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,77 @@
+package com.training.blog.imports;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ImportSummary {
+    private long lines;
+    private long imported;
+    private long failed;
+    private long millis;
+    private List<ImportError> errors = new ArrayList<>();
+    //true when there were more errors than the report keeps
+    private boolean errorsTruncated;
+
+    public ImportSummary(){}
+
+    public void recordImported(int count){
+        imported += count;
+    }
+
+    public void recordError(long line, String message, int maxErrors){
+        failed++;
+        if(errors.size() < maxErrors){
+            errors.add(new ImportError(line, message));
+        }else{
+            errorsTruncated = true;
+        }
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public void setLines(long lines) {
+        this.lines = lines;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public void setMillis(long millis) {
+        this.millis = millis;
+    }
+
+    public List<ImportError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<ImportError> errors) {
+        this.errors = errors;
+    }
+
+    public boolean isErrorsTruncated() {
+        return errorsTruncated;
+    }
+
+    public void setErrorsTruncated(boolean errorsTruncated) {
+        this.errorsTruncated = errorsTruncated;
+    }
+}
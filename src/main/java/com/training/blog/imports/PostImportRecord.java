@@ -0,0 +1,40 @@
+package com.training.blog.imports;
+
+//one line of a post import, the author is referenced by username
+public class PostImportRecord {
+    private String title;
+    private String body;
+    private String author;
+
+    public PostImportRecord(){}
+
+    public PostImportRecord(String title, String body, String author){
+        this.title = title;
+        this.body = body;
+        this.author = author;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public void setAuthor(String author) {
+        this.author = author;
+    }
+}
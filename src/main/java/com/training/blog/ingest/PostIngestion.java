@@ -0,0 +1,71 @@
+package com.training.blog.ingest;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+//a post accepted with ?async=true, QUEUED until the writer committed it or gave up on it
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PostIngestion {
+
+    public enum Status { QUEUED, CREATED, FAILED }
+
+    private final String id;
+    private final Long userId;
+    private final String title;
+    private final Instant queuedAt = Instant.now();
+    private volatile Status status = Status.QUEUED;
+    private volatile Long postId;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    public PostIngestion(String id, Long userId, String title){
+        this.id = id;
+        this.userId = userId;
+        this.title = title;
+    }
+
+    public void created(Long postId){
+        this.postId = postId;
+        finishedAt = Instant.now();
+        status = Status.CREATED;
+    }
+
+    public void fail(String error){
+        this.error = error;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Long getPostId() {
+        return postId;
+    }
+
+    public Instant getQueuedAt() {
+        return queuedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,50 @@
+package com.training.blog.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+//times every public PostService and UserService method and records how many SQL statements it issued,
+//tagged by outcome and the exception type that the controller advice will map
+@Aspect
+@Component
+public class ServiceMetricsAspect {
+    static final String CALLS = "blog.service.calls";
+    static final String STATEMENTS = "blog.service.statements";
+
+    private final MeterRegistry registry;
+
+    public ServiceMetricsAspect(MeterRegistry registry){
+        this.registry = registry;
+    }
+
+    @Around("execution(public * com.training.blog.services.PostService.*(..))"
+            + " || execution(public * com.training.blog.services.UserService.*(..))")
+    public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+        String service = joinPoint.getSignature().getDeclaringType().getSimpleName();
+        String method = joinPoint.getSignature().getName();
+        long statements = StatementCounter.current();
+        Timer.Sample sample = Timer.start(registry);
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable ex){
+            exception = ex.getClass().getSimpleName();
+            throw ex;
+        } finally {
+            String outcome = exception.equals("none") ? "SUCCESS" : "ERROR";
+            sample.stop(Timer.builder(CALLS)
+                    .tags("service", service, "method", method, "outcome", outcome, "exception", exception)
+                    .publishPercentileHistogram()
+                    .register(registry));
+            DistributionSummary.builder(STATEMENTS)
+                    .tags("service", service, "method", method)
+                    .register(registry)
+                    .record(StatementCounter.current() - statements);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.training.blog.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+//registered as Hibernate's statement inspector, counts the SQL statements prepared on the current thread
+//so ServiceMetricsAspect can tell how many a service call issued
+public class StatementCounter implements StatementInspector {
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    static long current(){
+        return COUNT.get()[0];
+    }
+}
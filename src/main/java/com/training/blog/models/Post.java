@@ -1,17 +1,34 @@
 package com.training.blog.models;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotEmpty;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Objects;
 
+//updates only write the columns that changed
 @Entity
+@DynamicUpdate
+@Table(indexes = {
+        @Index(name = "idx_post_author_id", columnList = "author_id, id"),
+        @Index(name = "idx_post_created_at", columnList = "created_at desc, id desc")
+},
+        uniqueConstraints = @UniqueConstraint(name = Post.TITLE_CONSTRAINT, columnNames = "title"))
 public class Post {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public static final String TITLE_CONSTRAINT = "uk_post_title";
+
+    //a pooled sequence hands out ids in blocks, so inserts can be batched unlike with IDENTITY
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "post_seq")
+    @SequenceGenerator(name = "post_seq", sequenceName = "post_seq", allocationSize = 50)
     private Long id;
 
     @NotEmpty(message = "Title must not be empty")
@@ -20,6 +37,24 @@ public class Post {
     @NotEmpty(message = "Body must not be empty")
     private String body;
 
+    //bumped by every update, together with lastModified it backs the ETag and Last-Modified headers
+    @Version
+    @ColumnDefault("0")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    @UpdateTimestamp
+    @ColumnDefault("CURRENT_TIMESTAMP")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant lastModified;
+
+    //set once on insert, truncated to what the column keeps so feed cursors taken from memory and
+    //from the database compare the same
+    @Column(name = "created_at", nullable = false, updatable = false)
+    @ColumnDefault("CURRENT_TIMESTAMP")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant createdAt;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "author_id", referencedColumnName = "id")
     @OnDelete(action = OnDeleteAction.CASCADE)
@@ -54,6 +89,30 @@ public class Post {
         this.body = body;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Instant lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
     public User getAuthor() {
         return author;
     }
@@ -62,6 +121,13 @@ public class Post {
         this.author = author;
     }
 
+    @PrePersist
+    void onCreate() {
+        if (createdAt == null) {
+            createdAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        }
+    }
+
     @Override
     public String toString() {
         return "Post{" +
@@ -1,24 +1,46 @@
 package com.training.blog.models;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+//updates only write the columns that changed
 @Entity
+@DynamicUpdate
+@Table(uniqueConstraints = @UniqueConstraint(name = User.USERNAME_CONSTRAINT, columnNames = "username"))
 public class User {
 
-    @Id @GeneratedValue
+    public static final String USERNAME_CONSTRAINT = "uk_user_username";
+
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = 50)
     private Long id;
 
     @NotEmpty(message = "Username must not be empty.")
     private String username;
 
+    //bumped by every update, together with lastModified it backs the ETag and Last-Modified headers
+    @Version
+    @ColumnDefault("0")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    @UpdateTimestamp
+    @ColumnDefault("CURRENT_TIMESTAMP")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant lastModified;
+
     public User() {
 
     }
@@ -43,4 +65,20 @@ public class User {
         this.username = username;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Instant lastModified) {
+        this.lastModified = lastModified;
+    }
+
 }
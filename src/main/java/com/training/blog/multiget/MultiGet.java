@@ -0,0 +1,59 @@
+package com.training.blog.multiget;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.training.blog.exceptions.BatchTooLargeException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+//GET /api/posts?ids= and /api/users?ids=. whatever the entity cache holds is taken from there, the rest is
+//read with one IN query per chunk, so a long id list neither turns into one query per id nor into a
+//statement with more parameters than the database takes
+@Component
+public class MultiGet {
+
+    private final int chunkSize;
+    private final int maxIds;
+
+    public MultiGet(@Value("${blog.multiget.chunk-size:500}") int chunkSize,
+                    @Value("${blog.multiget.max-ids:1000}") int maxIds){
+        this.chunkSize = chunkSize;
+        this.maxIds = maxIds;
+    }
+
+    //loader gets at most chunk-size ids and returns the entities it found, in any order
+    public <T> MultiGetResponse<T> fetch(List<Long> ids, Cache<Long, T> cache,
+                                         Function<List<Long>, List<T>> loader, Function<T, Long> idOf){
+        Set<Long> requested = new LinkedHashSet<>();
+        ids.stream().filter(Objects::nonNull).forEach(requested::add);
+        if(requested.size() > maxIds){
+            throw new BatchTooLargeException(requested.size(), maxIds);
+        }
+        Map<Long, T> found = new HashMap<>(cache.getAllPresent(requested));
+        List<Long> misses = requested.stream().filter(id -> !found.containsKey(id)).toList();
+        for(int from = 0; from < misses.size(); from += chunkSize){
+            for(T entity : loader.apply(misses.subList(from, Math.min(from + chunkSize, misses.size())))){
+                found.put(idOf.apply(entity), entity);
+            }
+        }
+        List<T> items = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for(Long id : requested){
+            T entity = found.get(id);
+            if(entity == null){
+                missing.add(id);
+            }else{
+                items.add(entity);
+            }
+        }
+        return new MultiGetResponse<>(items, missing);
+    }
+}
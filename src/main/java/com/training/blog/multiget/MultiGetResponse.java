@@ -0,0 +1,35 @@
+package com.training.blog.multiget;
+
+import java.util.List;
+
+public class MultiGetResponse<T> {
+
+    //in the order the ids were asked for, an id asked for twice is returned once
+    private List<T> items;
+
+    //ids that don't exist, in the order they were asked for
+    private List<Long> missing;
+
+    public MultiGetResponse(){}
+
+    public MultiGetResponse(List<T> items, List<Long> missing){
+        this.items = items;
+        this.missing = missing;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+
+    public List<Long> getMissing() {
+        return missing;
+    }
+
+    public void setMissing(List<Long> missing) {
+        this.missing = missing;
+    }
+}
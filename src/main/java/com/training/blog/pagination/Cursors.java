@@ -0,0 +1,53 @@
+package com.training.blog.pagination;
+
+import com.training.blog.exceptions.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+//cursors are the last seen id (or creation time and id) wrapped in base64 so clients treat them as opaque
+public final class Cursors {
+
+    private static final String PREFIX = "id:";
+    private static final String TIME_PREFIX = "at:";
+
+    private Cursors(){}
+
+    public static String encode(Long id){
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Long decode(String cursor){
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if(!raw.startsWith(PREFIX)){
+                throw new InvalidCursorException(cursor);
+            }
+            return Long.parseLong(raw.substring(PREFIX.length()));
+        } catch (IllegalArgumentException ex){
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+    public static String encode(TimeKey key){
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((TIME_PREFIX + key.createdAt() + "/" + key.id()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static TimeKey decodeTime(String cursor){
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('/');
+            if(!raw.startsWith(TIME_PREFIX) || separator < 0){
+                throw new InvalidCursorException(cursor);
+            }
+            return new TimeKey(Instant.parse(raw.substring(TIME_PREFIX.length(), separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException ex){
+            throw new InvalidCursorException(cursor);
+        }
+    }
+}
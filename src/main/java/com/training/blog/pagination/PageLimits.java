@@ -0,0 +1,40 @@
+package com.training.blog.pagination;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+@Component
+public class PageLimits {
+
+    private static final Sort BY_ID = Sort.by("id");
+
+    private final int defaultLimit;
+    private final int maxLimit;
+
+    public PageLimits(@Value("${blog.pagination.default-limit:20}") int defaultLimit,
+                      @Value("${blog.pagination.max-limit:100}") int maxLimit){
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    //the client can ask for less than the max but never more
+    public int clamp(Integer limit){
+        if(limit == null){
+            return Math.min(defaultLimit, maxLimit);
+        }
+        return Math.max(1, Math.min(limit, maxLimit));
+    }
+
+    //keyset queries always read the first slice after the cursor, offset queries skip whole pages
+    public Pageable pageable(PageQuery query){
+        int page = query.isOffset() ? Math.max(query.getPage(), 0) : 0;
+        return PageRequest.of(page, clamp(query.getLimit()), BY_ID);
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+}
@@ -0,0 +1,57 @@
+package com.training.blog.pagination;
+
+//bound from the query string of list endpoints: ?cursor=&limit=&page=&count=
+public class PageQuery {
+
+    private String cursor;
+    private Integer limit;
+
+    //set to page by offset instead of following the cursor
+    private Integer page;
+
+    //total counts cost an extra COUNT query so they are opt in
+    private boolean count;
+
+    public PageQuery(){}
+
+    public PageQuery(String cursor, Integer limit){
+        this.cursor = cursor;
+        this.limit = limit;
+    }
+
+    public boolean isOffset(){
+        return page != null;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+
+    public Integer getPage() {
+        return page;
+    }
+
+    public void setPage(Integer page) {
+        this.page = page;
+    }
+
+    public boolean isCount() {
+        return count;
+    }
+
+    public void setCount(boolean count) {
+        this.count = count;
+    }
+}
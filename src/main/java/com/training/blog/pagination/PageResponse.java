@@ -0,0 +1,77 @@
+package com.training.blog.pagination;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.function.Function;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PageResponse<T> {
+
+    private List<T> items;
+
+    //opaque cursor for keyset paging, null on the last page
+    private String next;
+
+    //only set when the client pages by offset
+    private Integer nextPage;
+
+    //only set when the client asked for it with count=true
+    private Long total;
+
+    public PageResponse(){}
+
+    public PageResponse(List<T> items, String next){
+        this.items = items;
+        this.next = next;
+    }
+
+    public static <T> PageResponse<T> ofPage(List<T> items, Integer nextPage){
+        PageResponse<T> response = new PageResponse<>(items, null);
+        response.setNextPage(nextPage);
+        return response;
+    }
+
+    public static <T> PageResponse<T> keyset(Slice<T> slice, Function<T, Long> idOf){
+        List<T> items = slice.getContent();
+        String next = slice.hasNext() ? Cursors.encode(idOf.apply(items.get(items.size() - 1))) : null;
+        return new PageResponse<>(items, next);
+    }
+
+    public static <T> PageResponse<T> offset(Slice<T> slice){
+        return ofPage(slice.getContent(), slice.hasNext() ? slice.getNumber() + 1 : null);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+
+    public Integer getNextPage() {
+        return nextPage;
+    }
+
+    public void setNextPage(Integer nextPage) {
+        this.nextPage = nextPage;
+    }
+
+    public Long getTotal() {
+        return total;
+    }
+
+    public void setTotal(Long total) {
+        this.total = total;
+    }
+}
@@ -0,0 +1,33 @@
+package com.training.blog.pagination;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+//the offset, first page and cursor branches every id-ordered list endpoint shares. first reads from the
+//start (skipping pages when paging by offset), after reads past the id decoded from the cursor
+public final class Pages {
+
+    private Pages(){}
+
+    public static <T> PageResponse<T> read(PageQuery query, Pageable pageable,
+                                           Function<Pageable, Slice<T>> first,
+                                           BiFunction<Long, Pageable, Slice<T>> after,
+                                           Function<T, Long> idOf, LongSupplier total){
+        PageResponse<T> response;
+        if(query.isOffset()){
+            response = PageResponse.offset(first.apply(pageable));
+        }else if(query.getCursor() == null){
+            response = PageResponse.keyset(first.apply(pageable), idOf);
+        }else{
+            response = PageResponse.keyset(after.apply(Cursors.decode(query.getCursor()), pageable), idOf);
+        }
+        if(query.isCount()){
+            response.setTotal(total.getAsLong());
+        }
+        return response;
+    }
+}
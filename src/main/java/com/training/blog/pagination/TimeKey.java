@@ -0,0 +1,13 @@
+package com.training.blog.pagination;
+
+import java.time.Instant;
+
+//position in a newest-first list ordered by creation time with the id breaking ties
+public record TimeKey(Instant createdAt, Long id) {
+
+    //true when something created at createdAt with this id comes after this position
+    public boolean isBefore(Instant otherCreatedAt, Long otherId){
+        int byTime = otherCreatedAt.compareTo(createdAt);
+        return byTime < 0 || (byTime == 0 && otherId < id);
+    }
+}
@@ -0,0 +1,45 @@
+package com.training.blog.patch;
+
+import jakarta.validation.constraints.Size;
+
+//partial post update, null fields are left as they are
+public class PostPatch {
+    @Size(min = 1, message = "Title must not be empty")
+    private String title;
+    @Size(min = 1, message = "Body must not be empty")
+    private String body;
+    //the version the client last read, If-Match takes precedence
+    private Long version;
+
+    public PostPatch(){}
+
+    public PostPatch(String title, String body, Long version){
+        this.title = title;
+        this.body = body;
+        this.version = version;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,34 @@
+package com.training.blog.patch;
+
+import jakarta.validation.constraints.Size;
+
+//partial user update, null fields are left as they are
+public class UserPatch {
+    @Size(min = 1, message = "Username must not be empty.")
+    private String username;
+    //the version the client last read, If-Match takes precedence
+    private Long version;
+
+    public UserPatch(){}
+
+    public UserPatch(String username, Long version){
+        this.username = username;
+        this.version = version;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
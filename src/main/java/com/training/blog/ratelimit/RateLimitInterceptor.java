@@ -0,0 +1,44 @@
+package com.training.blog.ratelimit;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//runs after the handler is picked, so the {user_id} path variable is known, and anything thrown here
+//goes through the controller advice like it was thrown by the controller
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private static final String NOT_LIMITED = "";
+
+    private final RateLimiter rateLimiter;
+    //the annotation lookup is cached, it would otherwise be the most expensive part of the check
+    private final Map<Method, String> groups = new ConcurrentHashMap<>();
+
+    public RateLimitInterceptor(RateLimiter rateLimiter){
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler){
+        if(!(handler instanceof HandlerMethod method)){
+            return true;
+        }
+        String group = groups.computeIfAbsent(method.getMethod(), m -> {
+            RateLimited limited = method.getMethodAnnotation(RateLimited.class);
+            return limited == null ? NOT_LIMITED : limited.value();
+        });
+        if(group.isEmpty()){
+            return true;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        rateLimiter.acquire(group, variables == null ? null : variables.get("user_id"), request.getRemoteAddr());
+        return true;
+    }
+}
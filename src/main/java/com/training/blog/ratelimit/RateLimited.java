@@ -0,0 +1,15 @@
+package com.training.blog.ratelimit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//marks a handler method as taking a token from blog.ratelimit.groups.<value>, once for the
+//{user_id} in its path if it has one and once for the client address
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+
+    String value();
+}
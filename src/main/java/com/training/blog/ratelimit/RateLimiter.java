@@ -0,0 +1,64 @@
+package com.training.blog.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.training.blog.exceptions.RateLimitExceededException;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+//one token bucket per endpoint group and user, and per endpoint group and client. a request has to get
+//a token from both, so neither one user posting from many clients nor one client posting as many users
+//gets more than its share. max-keys bounds how many buckets are kept, the ones used least are dropped
+//first and come back full. there's no expiry on purpose, it would read the clock on every lookup
+public class RateLimiter {
+
+    //tokens per second and how many can be saved up
+    public record Limit(double rate, int burst) {}
+
+    private final Map<String, Group> groups = new HashMap<>();
+
+    public RateLimiter(Map<String, Limit> limits, long maxKeys){
+        limits.forEach((name, limit) -> {
+            if(limit.rate() <= 0 || limit.burst() < 1){
+                throw new IllegalArgumentException("Rate limit group '" + name + "' needs a rate above 0 and a burst of at least 1");
+            }
+            groups.put(name, new Group(limit, maxKeys));
+        });
+    }
+
+    //userId may be null for endpoints that aren't about one user
+    public void acquire(String group, String userId, String client){
+        Group limits = groups.get(group);
+        if(limits == null){
+            throw new IllegalStateException("No rate limit configured for group '" + group + "'");
+        }
+        TokenBucket clientBucket = limits.bucket("client:" + client);
+        long wait = clientBucket.tryAcquire(System::nanoTime);
+        if(wait == 0 && userId != null){
+            wait = limits.bucket("user:" + userId).tryAcquire(System::nanoTime);
+            if(wait != 0){
+                clientBucket.release();
+            }
+        }
+        if(wait != 0){
+            throw new RateLimitExceededException(group, Duration.ofNanos(wait));
+        }
+    }
+
+    private static final class Group {
+
+        private final Limit limit;
+        private final Cache<String, TokenBucket> buckets;
+
+        Group(Limit limit, long maxKeys){
+            this.limit = limit;
+            this.buckets = Caffeine.newBuilder().maximumSize(maxKeys).build();
+        }
+
+        TokenBucket bucket(String key){
+            return buckets.get(key, k -> new TokenBucket(limit.rate(), limit.burst(), System.nanoTime()));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.training.blog.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+//a token bucket kept as the single time at which it will be full again (the "theoretical arrival time"
+//of GCRA), so taking a token is one compare-and-set and concurrent callers never block each other.
+//the clock is System.nanoTime() outside of tests
+final class TokenBucket {
+
+    private final long interval;
+    private final long capacity;
+    private final AtomicLong fullAt;
+
+    TokenBucket(double tokensPerSecond, int burst, long now){
+        this.interval = Math.max(1, (long) (1_000_000_000 / tokensPerSecond));
+        this.capacity = interval * burst;
+        this.fullAt = new AtomicLong(now);
+    }
+
+    //0 when a token was taken, otherwise how many nanos until the next one is there. the clock is read
+    //again on every attempt, a caller that lost the CPU in between would otherwise be judged by a stale time
+    long tryAcquire(LongSupplier clock){
+        while (true){
+            long current = fullAt.get();
+            long now = clock.getAsLong();
+            long next = Math.max(current, now) + interval;
+            long ahead = next - now;
+            if(ahead > capacity){
+                return ahead - capacity;
+            }
+            if(fullAt.compareAndSet(current, next)){
+                return 0;
+            }
+        }
+    }
+
+    //puts back a token taken by a request that was turned away by another bucket after all
+    void release(){
+        fullAt.addAndGet(-interval);
+    }
+}
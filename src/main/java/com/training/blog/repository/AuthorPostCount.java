@@ -0,0 +1,8 @@
+package com.training.blog.repository;
+
+//one row of the per-author aggregate the author statistics are reconciled against
+public interface AuthorPostCount {
+    Long getAuthorId();
+    long getPosts();
+    Long getLatestPostId();
+}
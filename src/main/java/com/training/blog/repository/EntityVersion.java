@@ -0,0 +1,12 @@
+package com.training.blog.repository;
+
+import java.time.Instant;
+
+//just what conditional requests need, read without touching the rest of the row
+public record EntityVersion(Long version, Instant lastModified) {
+
+    //-1 tells WebRequest.checkNotModified there is no Last-Modified to compare
+    public long lastModifiedMillis(){
+        return lastModified == null ? -1 : lastModified.toEpochMilli();
+    }
+}
@@ -0,0 +1,7 @@
+package com.training.blog.repository;
+
+//id and title of a post without loading its body
+public interface PostKey {
+    Long getId();
+    String getTitle();
+}
@@ -0,0 +1,7 @@
+package com.training.blog.repository;
+
+//title and author of a post without loading its body
+public interface PostRef {
+    String getTitle();
+    Long getAuthorId();
+}
@@ -1,11 +1,26 @@
 package com.training.blog.repository;
 
+import com.training.blog.feed.FeedEntry;
 import com.training.blog.models.Post;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PostRepository extends PagingAndSortingRepository<Post, Long> {
@@ -22,4 +37,104 @@ public interface PostRepository extends PagingAndSortingRepository<Post, Long> {
     Optional<Post> findByTitle(String title);
 
     List<Post> findAllByAuthorId(Long id);
+
+    Slice<Post> findAllBy(Pageable pageable);
+
+    Slice<Post> findAllByIdGreaterThan(Long id, Pageable pageable);
+
+    Slice<Post> findAllByAuthorId(Long id, Pageable pageable);
+
+    Slice<Post> findAllByAuthorIdAndIdGreaterThan(Long authorId, Long id, Pageable pageable);
+
+    long countByAuthorId(Long id);
+
+    long count();
+
+    boolean existsById(Long id);
+
+    List<Post> findAllByIdIn(Collection<Long> ids);
+
+    @Query("select p.id as id, p.title as title from Post p where p.author.id = :authorId")
+    List<PostKey> findKeysByAuthorId(@Param("authorId") Long authorId);
+
+    @Query("select p.id as id, p.title as title from Post p where p.author.id = :authorId order by p.id")
+    List<PostKey> findKeysByAuthorId(@Param("authorId") Long authorId, Pageable pageable);
+
+    //single statement delete, 0 when the post is gone or was renamed since the title was read
+    @Modifying
+    @Transactional
+    @Query("delete from Post p where p.id = :id and p.title = :title")
+    int deleteByIdAndTitle(@Param("id") Long id, @Param("title") String title);
+
+    @Modifying
+    @Transactional
+    @Query("delete from Post p where p.id in :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+
+    //the ids of those posts that still exist, locked until the transaction ends so a concurrent
+    //delete of one of them either finished before or waits until after
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p.id from Post p where p.id in :ids")
+    List<Long> lockIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    //summary lists, only the first excerptLength characters of the body leave the database
+    @Query("select new com.training.blog.repository.PostSummary(p.id, p.title, p.author.id, substring(p.body, 1, :excerptLength)) " +
+            "from Post p")
+    Slice<PostSummary> findSummariesBy(@Param("excerptLength") int excerptLength, Pageable pageable);
+
+    @Query("select new com.training.blog.repository.PostSummary(p.id, p.title, p.author.id, substring(p.body, 1, :excerptLength)) " +
+            "from Post p where p.id > :id")
+    Slice<PostSummary> findSummariesByIdGreaterThan(@Param("id") Long id, @Param("excerptLength") int excerptLength,
+                                                    Pageable pageable);
+
+    @Query("select new com.training.blog.repository.PostSummary(p.id, p.title, p.author.id, substring(p.body, 1, :excerptLength)) " +
+            "from Post p where p.author.id = :authorId")
+    Slice<PostSummary> findSummariesByAuthorId(@Param("authorId") Long authorId, @Param("excerptLength") int excerptLength,
+                                               Pageable pageable);
+
+    @Query("select new com.training.blog.repository.PostSummary(p.id, p.title, p.author.id, substring(p.body, 1, :excerptLength)) " +
+            "from Post p where p.author.id = :authorId and p.id > :id")
+    Slice<PostSummary> findSummariesByAuthorIdAndIdGreaterThan(@Param("authorId") Long authorId, @Param("id") Long id,
+                                                               @Param("excerptLength") int excerptLength,
+                                                               Pageable pageable);
+
+    //the feed, newest first. both read the (created_at, id) index from the top without a sort
+    @Query("select new com.training.blog.feed.FeedEntry(p.id, p.title, p.author.id, substring(p.body, 1, :excerptLength), " +
+            "p.createdAt, p.version) from Post p order by p.createdAt desc, p.id desc")
+    Slice<FeedEntry> findFeed(@Param("excerptLength") int excerptLength, Pageable pageable);
+
+    @Query("select new com.training.blog.feed.FeedEntry(p.id, p.title, p.author.id, substring(p.body, 1, :excerptLength), " +
+            "p.createdAt, p.version) from Post p " +
+            "where p.createdAt <= :createdAt and (p.createdAt < :createdAt or p.id < :id) " +
+            "order by p.createdAt desc, p.id desc")
+    Slice<FeedEntry> findFeedBefore(@Param("createdAt") Instant createdAt, @Param("id") Long id,
+                                    @Param("excerptLength") int excerptLength, Pageable pageable);
+
+    //for conditional GETs, the body column isn't read
+    @Query("select new com.training.blog.repository.EntityVersion(p.version, p.lastModified) from Post p where p.id = :id")
+    Optional<EntityVersion> findVersionById(@Param("id") Long id);
+
+    @Query("select p.title as title, p.author.id as authorId from Post p where p.id = :id")
+    Optional<PostRef> findRefById(@Param("id") Long id);
+
+    //served from the (author_id, id) index
+    @Query("select max(p.id) from Post p where p.author.id = :authorId")
+    Long findLatestIdByAuthorId(@Param("authorId") Long authorId);
+
+    @Query("select p.author.id as authorId, count(p) as posts, max(p.id) as latestPostId from Post p group by p.author.id")
+    List<AuthorPostCount> countPostsByAuthor();
+
+    @Query("select p.title from Post p where p.id = :id")
+    Optional<String> findTitleById(@Param("id") Long id);
+
+    @Query("select p.title from Post p")
+    List<String> findAllTitles();
+
+    //needs an open transaction, rows are fetched from the cursor in blocks of the fetch size
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from Post p order by p.id")
+    Stream<Post> streamAll();
 }
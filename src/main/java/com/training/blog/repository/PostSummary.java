@@ -0,0 +1,5 @@
+package com.training.blog.repository;
+
+//list view of a post: the excerpt is cut in SQL, so the full body is never read into the application
+public record PostSummary(Long id, String title, Long authorId, String excerpt) {
+}
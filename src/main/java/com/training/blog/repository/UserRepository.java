@@ -1,11 +1,22 @@
 package com.training.blog.repository;
 
 import com.training.blog.models.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends PagingAndSortingRepository<User, Long> {
@@ -25,4 +36,35 @@ public interface UserRepository extends PagingAndSortingRepository<User, Long> {
     void delete(User user);
 
     Optional<User> findByUsername(String username);
+
+    Slice<User> findAllBy(Pageable pageable);
+
+    Slice<User> findAllByIdGreaterThan(Long id, Pageable pageable);
+
+    List<User> findAllByIdIn(Collection<Long> ids);
+
+    long count();
+
+    @Query("select new com.training.blog.repository.EntityVersion(u.version, u.lastModified) from User u where u.id = :id")
+    Optional<EntityVersion> findVersionById(@Param("id") Long id);
+
+    @Query("select u.username from User u where u.id = :id")
+    Optional<String> findUsernameById(@Param("id") Long id);
+
+    //single statement delete, 0 when the user is gone or was renamed since the username was read
+    @Modifying
+    @Transactional
+    @Query("delete from User u where u.id = :id and u.username = :username")
+    int deleteByIdAndUsername(@Param("id") Long id, @Param("username") String username);
+
+    @Query("select u.username from User u")
+    List<String> findAllUsernames();
+
+    //needs an open transaction, rows are fetched from the cursor in blocks of the fetch size
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select u from User u order by u.id")
+    Stream<User> streamAll();
 }
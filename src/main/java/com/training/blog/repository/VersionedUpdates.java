@@ -0,0 +1,40 @@
+package com.training.blog.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Map;
+
+//compare-and-set for versioned entities: one UPDATE that writes only the changed columns and
+//only matches while the row is still at the version the client read
+@Component
+public class VersionedUpdates {
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+
+    public VersionedUpdates(EntityManager entityManager, TransactionTemplate transactionTemplate){
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    //false when no row matched, either the id is gone or someone else updated it first
+    public <T> boolean update(Class<T> type, Long id, Long version, Map<String, Object> changes){
+        Integer updated = transactionTemplate.execute(status -> {
+            CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+            CriteriaUpdate<T> update = builder.createCriteriaUpdate(type);
+            Root<T> root = update.from(type);
+            changes.forEach(update::set);
+            update.set(root.<Long>get("version"), builder.sum(root.<Long>get("version"), 1L));
+            update.set(root.<Instant>get("lastModified"), Instant.now());
+            update.where(builder.equal(root.get("id"), id), builder.equal(root.get("version"), version));
+            return entityManager.createQuery(update).executeUpdate();
+        });
+        return updated != null && updated == 1;
+    }
+}
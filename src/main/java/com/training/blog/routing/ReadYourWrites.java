@@ -0,0 +1,50 @@
+package com.training.blog.routing;
+
+import java.util.function.Supplier;
+
+//per thread say in whether reads may go to a replica. a thread that wrote keeps reading from the
+//primary for the sticky window, ReadYourWritesFilter carries that window over to a client's next
+//requests. nothing here matters unless replicas are configured
+public final class ReadYourWrites {
+
+    private static final ThreadLocal<Long> pinnedUntil = new ThreadLocal<>();
+    private static final ThreadLocal<Integer> primaryScopes = new ThreadLocal<>();
+
+    private ReadYourWrites(){}
+
+    public static boolean isPinned(){
+        if(primaryScopes.get() != null){
+            return true;
+        }
+        Long until = pinnedUntil.get();
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    //only ever extends the window
+    public static void pinUntil(long millis){
+        Long current = pinnedUntil.get();
+        if(current == null || current < millis){
+            pinnedUntil.set(millis);
+        }
+    }
+
+    public static void clear(){
+        pinnedUntil.remove();
+    }
+
+    //for reads whose result outlives the request, like entity cache fills, a lagging replica
+    //would hand its stale copy to every later reader
+    public static <T> T onPrimary(Supplier<T> read){
+        Integer outer = primaryScopes.get();
+        primaryScopes.set(outer == null ? 1 : outer + 1);
+        try {
+            return read.get();
+        } finally {
+            if(outer == null){
+                primaryScopes.remove();
+            }else{
+                primaryScopes.set(outer);
+            }
+        }
+    }
+}
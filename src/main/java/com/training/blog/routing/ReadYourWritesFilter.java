@@ -0,0 +1,69 @@
+package com.training.blog.routing;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+//a write request runs entirely on the primary and leaves the client a cookie with the end of its
+//sticky window, requests carrying it read from the primary too until then, so a client sees its own
+//writes even while the replicas lag behind
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String COOKIE = "blog-primary-until";
+
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final Duration stickyWindow;
+
+    public ReadYourWritesFilter(Duration stickyWindow){
+        this.stickyWindow = stickyWindow;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        Long pinnedUntil = pinnedUntil(request);
+        if(pinnedUntil != null){
+            ReadYourWrites.pinUntil(pinnedUntil);
+        }
+        if(!SAFE_METHODS.contains(request.getMethod())){
+            //the window counts from the start of the write, the cookie has to go out before the body
+            long until = System.currentTimeMillis() + stickyWindow.toMillis();
+            Cookie cookie = new Cookie(COOKIE, Long.toString(until));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, stickyWindow.toSeconds()));
+            response.addCookie(cookie);
+            ReadYourWrites.pinUntil(Long.MAX_VALUE);
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            //request threads are pooled, the next request may be another client's
+            ReadYourWrites.clear();
+        }
+    }
+
+    private static Long pinnedUntil(HttpServletRequest request){
+        if(request.getCookies() == null){
+            return null;
+        }
+        for(Cookie cookie : request.getCookies()){
+            if(COOKIE.equals(cookie.getName())){
+                try {
+                    return Long.valueOf(cookie.getValue());
+                } catch (NumberFormatException ex){
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+}
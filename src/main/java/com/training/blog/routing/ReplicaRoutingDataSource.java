@@ -0,0 +1,131 @@
+package com.training.blog.routing;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//connections for read-only transactions come from the healthy replicas in turn, everything else,
+//reads outside a transaction included, from the primary. has to sit behind a LazyConnectionDataSourceProxy,
+//the transaction is only marked read-only after it asked for its connection.
+//routes in getConnection itself rather than through AbstractRoutingDataSource's lookup key, so a
+//replica that fails between two health checks is taken out and the read falls back to the primary
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas;
+    private final long stickyMillis;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas, Duration stickyWindow){
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.stickyMillis = stickyWindow.toMillis();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = route();
+        if(replica == null){
+            return primary.getConnection();
+        }
+        try {
+            return replica.dataSource.getConnection();
+        } catch (SQLException | RuntimeException ex){
+            replica.down(ex);
+            return primary.getConnection();
+        }
+    }
+
+    //the pools behind it don't take per-call credentials either
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Credentials are configured per pool");
+    }
+
+    //null for the primary
+    private Replica route(){
+        boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if(!readOnly && TransactionSynchronizationManager.isActualTransactionActive()){
+            //a read-write transaction may be writing, this thread's next reads shouldn't miss it
+            ReadYourWrites.pinUntil(System.currentTimeMillis() + stickyMillis);
+        }
+        if(!readOnly || ReadYourWrites.isPinned()){
+            return null;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for(int i = 0; i < size; i++){
+            Replica replica = replicas.get((start + i) % size);
+            if(replica.healthy){
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    //a replica has to hand out a valid connection to be back in rotation
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${blog.datasource.replica-check-interval:PT5S}",
+            initialDelayString = "${blog.datasource.replica-check-interval:PT5S}")
+    public void checkReplicas(){
+        for(Replica replica : replicas){
+            try (Connection connection = replica.dataSource.getConnection()){
+                if(connection.isValid(1)){
+                    replica.up();
+                }else{
+                    replica.down(null);
+                }
+            } catch (SQLException | RuntimeException ex){
+                replica.down(ex);
+            }
+        }
+    }
+
+    public int healthyReplicas(){
+        return (int) replicas.stream().filter(replica -> replica.healthy).count();
+    }
+
+    @Override
+    public void close(){
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+
+    private static final class Replica {
+        private final HikariDataSource dataSource;
+        private volatile boolean healthy = true;
+
+        Replica(HikariDataSource dataSource){
+            this.dataSource = dataSource;
+        }
+
+        void up(){
+            if(!healthy){
+                log.info("Replica {} is back in rotation", dataSource.getPoolName());
+            }
+            healthy = true;
+        }
+
+        void down(Exception cause){
+            if(healthy){
+                log.warn("Replica {} taken out of rotation: {}", dataSource.getPoolName(),
+                        cause == null ? "connection not valid" : cause.getMessage());
+            }
+            healthy = false;
+        }
+    }
+}
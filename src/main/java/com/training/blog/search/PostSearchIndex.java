@@ -0,0 +1,201 @@
+package com.training.blog.search;
+
+import com.training.blog.models.Post;
+import com.training.blog.repository.PostRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//inverted index over post title and body ranked with BM25
+//kept in sync by PostService and rebuilt from the repository on startup
+@Component
+public class PostSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PostSearchIndex.class);
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    //a title match counts as this many body matches
+    private static final int TITLE_WEIGHT = 3;
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    private final PostRepository postRepository;
+
+    //term -> (post id -> weighted term frequency)
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    //post id -> distinct terms, needed to take a post back out of the postings
+    private final Map<Long, String[]> documentTerms = new HashMap<>();
+    private final Map<Long, Integer> documentLengths = new HashMap<>();
+    private long totalLength;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public PostSearchIndex(PostRepository postRepository){
+        this.postRepository = postRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild(){
+        long start = System.currentTimeMillis();
+        clear();
+        Pageable pageable = PageRequest.of(0, REBUILD_PAGE_SIZE, Sort.by("id"));
+        Slice<Post> slice = postRepository.findAllBy(pageable);
+        while (true){
+            slice.forEach(this::index);
+            if(!slice.hasNext()){
+                break;
+            }
+            List<Post> posts = slice.getContent();
+            slice = postRepository.findAllByIdGreaterThan(posts.get(posts.size() - 1).getId(), pageable);
+        }
+        log.info("Indexed {} posts for search in {} ms", size(), System.currentTimeMillis() - start);
+    }
+
+    //adds the post or replaces what was indexed for it before
+    public void index(Post post){
+        Map<String, Integer> frequencies = new HashMap<>();
+        for(String term : Tokenizer.tokenize(post.getTitle())){
+            frequencies.merge(term, TITLE_WEIGHT, Integer::sum);
+        }
+        for(String term : Tokenizer.tokenize(post.getBody())){
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        int length = frequencies.values().stream().mapToInt(Integer::intValue).sum();
+
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(post.getId());
+            for(Map.Entry<String, Integer> entry : frequencies.entrySet()){
+                postings.computeIfAbsent(entry.getKey(), term -> new HashMap<>())
+                        .put(post.getId(), entry.getValue());
+            }
+            documentTerms.put(post.getId(), frequencies.keySet().toArray(new String[0]));
+            documentLengths.put(post.getId(), length);
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long postId){
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(postId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeAll(Collection<Long> postIds){
+        lock.writeLock().lock();
+        try {
+            postIds.forEach(this::removeUnlocked);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //returns at most k hits, best first, using a min-heap of size k instead of sorting every match
+    public List<SearchHit> search(String query, int k){
+        List<String> terms = Tokenizer.tokenize(query);
+        if(terms.isEmpty() || k <= 0){
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            int documents = documentLengths.size();
+            if(documents == 0){
+                return new ArrayList<>();
+            }
+            double averageLength = (double) totalLength / documents;
+            Map<Long, Double> scores = new HashMap<>();
+            for(String term : terms.stream().distinct().toList()){
+                Map<Long, Integer> matches = postings.get(term);
+                if(matches == null){
+                    continue;
+                }
+                double idf = Math.log(1 + (documents - matches.size() + 0.5) / (matches.size() + 0.5));
+                for(Map.Entry<Long, Integer> match : matches.entrySet()){
+                    int frequency = match.getValue();
+                    double norm = K1 * (1 - B + B * documentLengths.get(match.getKey()) / averageLength);
+                    scores.merge(match.getKey(), idf * frequency * (K1 + 1) / (frequency + norm), Double::sum);
+                }
+            }
+            return topK(scores, k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size(){
+        lock.readLock().lock();
+        try {
+            return documentLengths.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<SearchHit> topK(Map<Long, Double> scores, int k){
+        Comparator<SearchHit> byScore = Comparator.comparingDouble(SearchHit::score)
+                .thenComparing(SearchHit::postId, Comparator.reverseOrder());
+        PriorityQueue<SearchHit> heap = new PriorityQueue<>(k, byScore);
+        for(Map.Entry<Long, Double> entry : scores.entrySet()){
+            SearchHit hit = new SearchHit(entry.getKey(), entry.getValue());
+            if(heap.size() < k){
+                heap.add(hit);
+            }else if(byScore.compare(hit, heap.peek()) > 0){
+                heap.poll();
+                heap.add(hit);
+            }
+        }
+        List<SearchHit> hits = new ArrayList<>(heap);
+        hits.sort(byScore.reversed());
+        return hits;
+    }
+
+    private void removeUnlocked(Long postId){
+        String[] terms = documentTerms.remove(postId);
+        if(terms == null){
+            return;
+        }
+        for(String term : terms){
+            Map<Long, Integer> matches = postings.get(term);
+            if(matches != null){
+                matches.remove(postId);
+                if(matches.isEmpty()){
+                    postings.remove(term);
+                }
+            }
+        }
+        totalLength -= documentLengths.remove(postId);
+    }
+
+    private void clear(){
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documentTerms.clear();
+            documentLengths.clear();
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
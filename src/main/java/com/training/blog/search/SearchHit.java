@@ -0,0 +1,4 @@
+package com.training.blog.search;
+
+public record SearchHit(Long postId, double score) {
+}
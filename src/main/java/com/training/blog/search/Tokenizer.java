@@ -0,0 +1,31 @@
+package com.training.blog.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+public final class Tokenizer {
+
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in",
+            "is", "it", "of", "on", "or", "that", "the", "to", "was", "with");
+
+    private Tokenizer(){}
+
+    public static List<String> tokenize(String text){
+        List<String> tokens = new ArrayList<>();
+        if(text == null){
+            return tokens;
+        }
+        for(String token : SEPARATOR.split(text.toLowerCase(Locale.ROOT))){
+            if(!token.isEmpty() && !STOP_WORDS.contains(token)){
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,69 @@
+package com.training.blog.services;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//keeps posts from being committed for an author that is being deleted. whatever writes posts holds its
+//authors' shared lock from the author check until the commit, deleteUser holds the exclusive one from
+//reading the author's posts until the user row is gone. without it a post committed in between would go
+//with the user through the cascade and keep its title, index and feed entries.
+//the database can't do this for us, H2 doesn't lock the referenced row when a post is inserted.
+//authors share a fixed number of stripes, so the locks take no memory per author
+@Component
+class AuthorLocks {
+
+    private static final int STRIPES = 256;
+
+    private final ReadWriteLock[] stripes = new ReadWriteLock[STRIPES];
+
+    AuthorLocks(){
+        for(int i = 0; i < STRIPES; i++){
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    Held posting(Long authorId){
+        return posting(List.of(authorId));
+    }
+
+    //taken in stripe order, so two writers with overlapping authors can't wait on each other around a delete
+    Held posting(Collection<Long> authorIds){
+        List<Lock> locks = new ArrayList<>();
+        authorIds.stream().map(this::stripe).distinct().sorted()
+                .forEach(stripe -> locks.add(stripes[stripe].readLock()));
+        return lock(locks);
+    }
+
+    Held deleting(Long authorId){
+        return lock(List.of(stripes[stripe(authorId)].writeLock()));
+    }
+
+    private int stripe(Long authorId){
+        return Math.floorMod(Long.hashCode(authorId), STRIPES);
+    }
+
+    private static Held lock(List<Lock> locks){
+        List<Lock> held = new ArrayList<>(locks.size());
+        try {
+            for(Lock lock : locks){
+                lock.lock();
+                held.add(lock);
+            }
+        } catch (RuntimeException ex){
+            held.forEach(Lock::unlock);
+            throw ex;
+        }
+        return () -> held.forEach(Lock::unlock);
+    }
+
+    interface Held extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,73 @@
+package com.training.blog.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.repository.PostRepository;
+import com.training.blog.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.stream.Stream;
+
+//writes whole tables as NDJSON, one row at a time so memory use doesn't depend on the row count
+@Service
+public class ExportService {
+
+    private static final int FLUSH_EVERY = 1000;
+
+    private final PostRepository postRepository;
+    private final UserRepository userRepository;
+    private final EntityManager entityManager;
+    private final ObjectWriter writer;
+
+    public ExportService(PostRepository postRepository, UserRepository userRepository,
+                         EntityManager entityManager, ObjectMapper objectMapper){
+        this.postRepository = postRepository;
+        this.userRepository = userRepository;
+        this.entityManager = entityManager;
+        this.writer = objectMapper.writer();
+    }
+
+    @Transactional(readOnly = true)
+    public long exportPosts(OutputStream out){
+        try (Stream<Post> posts = postRepository.streamAll()) {
+            return write(posts, out);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long exportUsers(OutputStream out){
+        try (Stream<User> users = userRepository.streamAll()) {
+            return write(users, out);
+        }
+    }
+
+    private long write(Stream<?> rows, OutputStream out){
+        long[] written = {0};
+        rows.forEachOrdered(row -> {
+            try {
+                out.write(writer.writeValueAsBytes(row));
+                out.write('\n');
+                //written rows must not pile up in the persistence context
+                entityManager.detach(row);
+                if(++written[0] % FLUSH_EVERY == 0){
+                    out.flush();
+                }
+            } catch (IOException ex){
+                throw new UncheckedIOException(ex);
+            }
+        });
+        try {
+            out.flush();
+        } catch (IOException ex){
+            throw new UncheckedIOException(ex);
+        }
+        return written[0];
+    }
+}
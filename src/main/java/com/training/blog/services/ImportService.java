@@ -0,0 +1,299 @@
+package com.training.blog.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.training.blog.cache.ResourceVersions;
+import com.training.blog.changes.ChangeStream;
+import com.training.blog.changes.ChangeType;
+import com.training.blog.imports.BoundedLineReader;
+import com.training.blog.imports.ImportSummary;
+import com.training.blog.imports.PostImportRecord;
+import com.training.blog.feed.RecentPostsFeed;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.repository.UserRepository;
+import com.training.blog.search.PostSearchIndex;
+import com.training.blog.stats.AuthorStatistics;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+//imports NDJSON uploads line by line and writes them in chunks, one transaction per chunk.
+//the next lines are only read once the current chunk is committed, so a fast client is held back
+//by the database instead of filling the heap. a line longer than max-line-length is reported, not read
+@Service
+public class ImportService {
+
+    private static final String NOT_AN_OBJECT = "Expected a JSON object";
+
+    private final UserRepository userRepository;
+    private final UniqueNameRegistry uniqueNames;
+    private final PostSearchIndex postSearchIndex;
+    private final ResourceVersions resourceVersions;
+    private final AuthorStatistics authorStatistics;
+    private final RecentPostsFeed recentPostsFeed;
+    private final ChangeStream changeStream;
+    private final AuthorLocks authorLocks;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectReader userReader;
+    private final ObjectReader postReader;
+    private final int chunkSize;
+    private final int maxErrors;
+    private final int authorCacheSize;
+    private final int maxLineLength;
+
+    public ImportService(UserRepository userRepository, UniqueNameRegistry uniqueNames,
+                         PostSearchIndex postSearchIndex, ResourceVersions resourceVersions,
+                         AuthorStatistics authorStatistics, RecentPostsFeed recentPostsFeed,
+                         ChangeStream changeStream, AuthorLocks authorLocks, EntityManager entityManager,
+                         TransactionTemplate transactionTemplate, Validator validator,
+                         ObjectMapper objectMapper,
+                         @Value("${blog.import.chunk-size:500}") int chunkSize,
+                         @Value("${blog.import.max-errors:1000}") int maxErrors,
+                         @Value("${blog.import.author-cache-size:10000}") int authorCacheSize,
+                         @Value("${blog.import.max-line-length:65536}") int maxLineLength){
+        this.userRepository = userRepository;
+        this.uniqueNames = uniqueNames;
+        this.postSearchIndex = postSearchIndex;
+        this.resourceVersions = resourceVersions;
+        this.authorStatistics = authorStatistics;
+        this.recentPostsFeed = recentPostsFeed;
+        this.changeStream = changeStream;
+        this.authorLocks = authorLocks;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.userReader = objectMapper.readerFor(User.class);
+        this.postReader = objectMapper.readerFor(PostImportRecord.class);
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+        this.authorCacheSize = authorCacheSize;
+        this.maxLineLength = maxLineLength;
+    }
+
+    public ImportSummary importUsers(InputStream in) throws IOException {
+        long start = System.currentTimeMillis();
+        ImportSummary summary = new ImportSummary();
+        Consumer<User> releaseName = user -> uniqueNames.releaseUsername(user.getUsername());
+        Consumer<User> imported = user -> {
+            resourceVersions.usersChanged();
+            changeStream.publish("user", ChangeType.CREATED, user.getId(), user.getVersion());
+        };
+        List<Pending<User>> chunk = new ArrayList<>(chunkSize);
+        try {
+            readLines(in, summary, (line, json) -> {
+                User user = userReader.readValue(json);
+                if(user == null){
+                    summary.recordError(line, NOT_AN_OBJECT, maxErrors);
+                    return;
+                }
+                user.setId(null);
+                String error = validate(user);
+                if(error != null){
+                    summary.recordError(line, error, maxErrors);
+                }else if(!uniqueNames.claimUsername(user.getUsername())){
+                    summary.recordError(line, "User with name " + user.getUsername() + " already exists", maxErrors);
+                }else{
+                    chunk.add(new Pending<>(line, user, null));
+                    if(chunk.size() == chunkSize){
+                        writeChunk(chunk, summary, User.USERNAME_CONSTRAINT, releaseName, imported);
+                    }
+                }
+            });
+            writeChunk(chunk, summary, User.USERNAME_CONSTRAINT, releaseName, imported);
+        } finally {
+            releasePending(chunk, releaseName);
+        }
+        summary.setMillis(System.currentTimeMillis() - start);
+        return summary;
+    }
+
+    public ImportSummary importPosts(InputStream in) throws IOException {
+        long start = System.currentTimeMillis();
+        ImportSummary summary = new ImportSummary();
+        Consumer<Post> releaseName = post -> uniqueNames.releaseTitle(post.getTitle());
+        Consumer<Post> imported = post -> {
+            authorStatistics.recordCreated(post.getAuthor().getId(), post.getId());
+            postSearchIndex.index(post);
+            recentPostsFeed.index(post);
+            changeStream.publish("post", ChangeType.CREATED, post.getId(), post.getVersion());
+            resourceVersions.postsChanged();
+        };
+        //authors repeat a lot in exports, but there can be too many of them to remember all
+        Cache<String, Long> authors = Caffeine.newBuilder().maximumSize(authorCacheSize).build();
+        List<Pending<Post>> chunk = new ArrayList<>(chunkSize);
+        try {
+            readLines(in, summary, (line, json) -> {
+                PostImportRecord record = postReader.readValue(json);
+                if(record == null){
+                    summary.recordError(line, NOT_AN_OBJECT, maxErrors);
+                    return;
+                }
+                Post post = new Post();
+                post.setTitle(record.getTitle());
+                post.setBody(record.getBody());
+                String error = validate(post);
+                if(error != null){
+                    summary.recordError(line, error, maxErrors);
+                    return;
+                }
+                Long authorId = record.getAuthor() == null ? null : authors.get(record.getAuthor(),
+                        username -> userRepository.findByUsername(username).map(User::getId).orElse(null));
+                if(authorId == null){
+                    summary.recordError(line, "Author '" + record.getAuthor() + "' not found", maxErrors);
+                }else if(!uniqueNames.claimTitle(post.getTitle())){
+                    summary.recordError(line, "Post with title '" + post.getTitle() + "' already exists", maxErrors);
+                }else{
+                    chunk.add(new Pending<>(line, post, authorId));
+                    if(chunk.size() == chunkSize){
+                        writePostChunk(chunk, summary, releaseName, imported);
+                    }
+                }
+            });
+            writePostChunk(chunk, summary, releaseName, imported);
+        } finally {
+            releasePending(chunk, releaseName);
+        }
+        summary.setMillis(System.currentTimeMillis() - start);
+        return summary;
+    }
+
+    private void readLines(InputStream in, ImportSummary summary, LineHandler handler) throws IOException {
+        BoundedLineReader reader = new BoundedLineReader(new InputStreamReader(in, StandardCharsets.UTF_8), maxLineLength);
+        long line = 0;
+        String json;
+        while ((json = reader.readLine()) != null){
+            line++;
+            if(reader.isTooLong()){
+                summary.recordError(line, "Line is longer than " + maxLineLength + " characters", maxErrors);
+                continue;
+            }
+            if(json.isBlank()){
+                continue;
+            }
+            try {
+                handler.handle(line, json);
+            } catch (JsonProcessingException ex){
+                summary.recordError(line, "Malformed JSON: " + ex.getOriginalMessage(), maxErrors);
+            }
+        }
+        summary.setLines(line);
+    }
+
+    //the upload broke off before the chunk was written, its names were claimed for nothing
+    private <T> void releasePending(List<Pending<T>> chunk, Consumer<T> releaseName){
+        chunk.forEach(pending -> releaseName.accept(pending.entity()));
+        chunk.clear();
+    }
+
+    private String validate(Object entity){
+        Set<ConstraintViolation<Object>> violations = validator.validate(entity);
+        if(violations.isEmpty()){
+            return null;
+        }
+        return violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(", "));
+    }
+
+    //the chunk's authors are marked as being written so a statistics reconcile leaves them alone, and
+    //can't be deleted until its posts are indexed, see AuthorLocks
+    private void writePostChunk(List<Pending<Post>> chunk, ImportSummary summary,
+                                Consumer<Post> releaseName, Consumer<Post> imported){
+        Set<Long> authors = chunk.stream().map(Pending::authorId).collect(Collectors.toSet());
+        try (AuthorLocks.Held held = authorLocks.posting(authors)){
+            authors.forEach(authorStatistics::beginWrite);
+            try {
+                writeChunk(chunk, summary, Post.TITLE_CONSTRAINT, releaseName, imported);
+            } finally {
+                authors.forEach(authorStatistics::endWrite);
+            }
+        }
+    }
+
+    private <T> void writeChunk(List<Pending<T>> chunk, ImportSummary summary, String constraint,
+                                Consumer<T> releaseName, Consumer<T> afterCommit){
+        if(chunk.isEmpty()){
+            return;
+        }
+        try {
+            writeChunkOrOneByOne(chunk, summary, constraint, releaseName, afterCommit);
+        } finally {
+            //written or settled line by line, either way none of its names are pending anymore
+            chunk.clear();
+        }
+    }
+
+    private <T> void writeChunkOrOneByOne(List<Pending<T>> chunk, ImportSummary summary, String constraint,
+                                          Consumer<T> releaseName, Consumer<T> afterCommit){
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(chunkSize);
+                chunk.forEach(this::persist);
+                entityManager.flush();
+                entityManager.clear();
+            });
+            summary.recordImported(chunk.size());
+            chunk.forEach(pending -> afterCommit.accept(pending.entity()));
+        } catch (RuntimeException ex){
+            //the chunk rolled back, retry one by one so only the bad lines are reported
+            for(Pending<T> pending : chunk){
+                try {
+                    resetId(pending.entity());
+                    transactionTemplate.executeWithoutResult(status -> {
+                        persist(pending);
+                        entityManager.flush();
+                        entityManager.clear();
+                    });
+                    summary.recordImported(1);
+                    afterCommit.accept(pending.entity());
+                } catch (RuntimeException itemEx){
+                    if(!UniqueConstraints.isViolated(itemEx, constraint)){
+                        releaseName.accept(pending.entity());
+                    }
+                    summary.recordError(pending.line(), String.valueOf(itemEx.getMessage()), maxErrors);
+                }
+            }
+        }
+    }
+
+    private void persist(Pending<?> pending){
+        if(pending.entity() instanceof Post post){
+            post.setAuthor(entityManager.getReference(User.class, pending.authorId()));
+        }
+        entityManager.persist(pending.entity());
+    }
+
+    private void resetId(Object entity){
+        if(entity instanceof Post post){
+            post.setId(null);
+        }else if(entity instanceof User user){
+            user.setId(null);
+        }
+    }
+
+    private record Pending<T>(long line, T entity, Long authorId) {
+    }
+
+    @FunctionalInterface
+    private interface LineHandler {
+        void handle(long line, String json) throws IOException;
+    }
+}
@@ -0,0 +1,168 @@
+package com.training.blog.services;
+
+import com.training.blog.batch.BatchItemResult;
+import com.training.blog.batch.BatchResult;
+import com.training.blog.cache.ResourceVersions;
+import com.training.blog.changes.ChangeStream;
+import com.training.blog.changes.ChangeType;
+import com.training.blog.exceptions.BatchTooLargeException;
+import com.training.blog.exceptions.UserNotFoundException;
+import com.training.blog.feed.RecentPostsFeed;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.repository.UserRepository;
+import com.training.blog.search.PostSearchIndex;
+import com.training.blog.stats.AuthorStatistics;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+//inserts many posts for one author in chunks, each chunk is one transaction and one JDBC batch
+@Service
+public class PostBatchService {
+
+    private static final String NOT_AN_OBJECT = "Expected a JSON object";
+
+    private final UserRepository userRepository;
+    private final UniqueNameRegistry uniqueNames;
+    private final PostSearchIndex postSearchIndex;
+    private final ResourceVersions resourceVersions;
+    private final AuthorStatistics authorStatistics;
+    private final RecentPostsFeed recentPostsFeed;
+    private final ChangeStream changeStream;
+    private final AuthorLocks authorLocks;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final int batchSize;
+    private final int maxItems;
+
+    public PostBatchService(UserRepository userRepository, UniqueNameRegistry uniqueNames,
+                            PostSearchIndex postSearchIndex, ResourceVersions resourceVersions,
+                            AuthorStatistics authorStatistics, RecentPostsFeed recentPostsFeed,
+                            ChangeStream changeStream, AuthorLocks authorLocks, EntityManager entityManager,
+                            TransactionTemplate transactionTemplate, Validator validator,
+                            @Value("${blog.posts.batch-size:50}") int batchSize,
+                            @Value("${blog.posts.batch-max-items:10000}") int maxItems){
+        this.userRepository = userRepository;
+        this.uniqueNames = uniqueNames;
+        this.postSearchIndex = postSearchIndex;
+        this.resourceVersions = resourceVersions;
+        this.authorStatistics = authorStatistics;
+        this.recentPostsFeed = recentPostsFeed;
+        this.changeStream = changeStream;
+        this.authorLocks = authorLocks;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.batchSize = batchSize;
+        this.maxItems = maxItems;
+    }
+
+    public BatchResult createPosts(List<Post> posts, Long id){
+        if(posts.size() > maxItems){
+            throw new BatchTooLargeException(posts.size(), maxItems);
+        }
+        //held until the last chunk is indexed, see AuthorLocks
+        try (AuthorLocks.Held held = authorLocks.posting(id)){
+            return createPosts(posts, id, userRepository.findById(id).orElseThrow(() -> new UserNotFoundException(id)));
+        }
+    }
+
+    private BatchResult createPosts(List<Post> posts, Long id, User author){
+        BatchItemResult[] results = new BatchItemResult[posts.size()];
+        List<Integer> accepted = new ArrayList<>();
+        for(int i = 0; i < posts.size(); i++){
+            Post post = posts.get(i);
+            if(post == null){
+                //null is a valid array element in JSON, but not a post
+                results[i] = BatchItemResult.failed(i, BatchItemResult.Status.INVALID, List.of(NOT_AN_OBJECT));
+                continue;
+            }
+            Set<ConstraintViolation<Post>> violations = validator.validate(post);
+            if(!violations.isEmpty()){
+                results[i] = BatchItemResult.failed(i, BatchItemResult.Status.INVALID,
+                        violations.stream().map(ConstraintViolation::getMessage).sorted().toList());
+            }else if(!uniqueNames.claimTitle(post.getTitle())){
+                //also catches the same title twice in one request, the first one wins
+                results[i] = duplicate(i, post);
+            }else{
+                post.setId(null);
+                post.setAuthor(author);
+                accepted.add(i);
+            }
+        }
+        authorStatistics.beginWrite(id);
+        try {
+            for(int from = 0; from < accepted.size(); from += batchSize){
+                List<Integer> chunk = accepted.subList(from, Math.min(from + batchSize, accepted.size()));
+                insertChunk(posts, chunk, results);
+            }
+        } finally {
+            authorStatistics.endWrite(id);
+        }
+        resourceVersions.postsChanged();
+        return new BatchResult(Arrays.asList(results));
+    }
+
+    private void insertChunk(List<Post> posts, List<Integer> chunk, BatchItemResult[] results){
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+                chunk.forEach(i -> entityManager.persist(posts.get(i)));
+                entityManager.flush();
+                entityManager.clear();
+            });
+        } catch (RuntimeException ex){
+            //the whole chunk rolled back, go item by item to find out which ones are at fault
+            chunk.forEach(i -> posts.get(i).setId(null));
+            chunk.forEach(i -> insertOne(posts.get(i), i, results));
+            return;
+        }
+        for(Integer i : chunk){
+            results[i] = BatchItemResult.created(i, posts.get(i).getId());
+            authorStatistics.recordCreated(posts.get(i).getAuthor().getId(), posts.get(i).getId());
+            postSearchIndex.index(posts.get(i));
+            recentPostsFeed.index(posts.get(i));
+            changeStream.publish("post", ChangeType.CREATED, posts.get(i).getId(), posts.get(i).getVersion());
+        }
+    }
+
+    private void insertOne(Post post, int index, BatchItemResult[] results){
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                entityManager.persist(post);
+                entityManager.flush();
+                entityManager.clear();
+            });
+            results[index] = BatchItemResult.created(index, post.getId());
+            authorStatistics.recordCreated(post.getAuthor().getId(), post.getId());
+            postSearchIndex.index(post);
+            recentPostsFeed.index(post);
+            changeStream.publish("post", ChangeType.CREATED, post.getId(), post.getVersion());
+        } catch (RuntimeException ex){
+            post.setId(null);
+            if(UniqueConstraints.isViolated(ex, Post.TITLE_CONSTRAINT)){
+                results[index] = duplicate(index, post);
+            }else{
+                uniqueNames.releaseTitle(post.getTitle());
+                results[index] = BatchItemResult.failed(index, BatchItemResult.Status.FAILED,
+                        List.of(String.valueOf(ex.getMessage())));
+            }
+        }
+    }
+
+    private BatchItemResult duplicate(int index, Post post){
+        return BatchItemResult.failed(index, BatchItemResult.Status.DUPLICATE,
+                List.of("Post with title '" + post.getTitle() + "' already exists"));
+    }
+}
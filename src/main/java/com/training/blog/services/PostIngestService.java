@@ -0,0 +1,264 @@
+package com.training.blog.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.training.blog.cache.ResourceVersions;
+import com.training.blog.changes.ChangeStream;
+import com.training.blog.changes.ChangeType;
+import com.training.blog.exceptions.IngestionNotFoundException;
+import com.training.blog.exceptions.IngestionQueueFullException;
+import com.training.blog.exceptions.NotUniqueException;
+import com.training.blog.ingest.PostIngestion;
+import com.training.blog.feed.RecentPostsFeed;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.search.PostSearchIndex;
+import com.training.blog.stats.AuthorStatistics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+//write-behind for POST /api/posts/{user_id}?async=true. the request only checks the post and queues it,
+//a single writer thread takes whatever has piled up while it was committing and writes it as one
+//transaction and JDBC batch, so under load many posts share one commit. a full queue turns new posts
+//away instead of growing, and on shutdown the queue is written out before the database goes away
+@Service
+public class PostIngestService implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(PostIngestService.class);
+
+    private final UserService userService;
+    private final UniqueNameRegistry uniqueNames;
+    private final PostSearchIndex postSearchIndex;
+    private final ResourceVersions resourceVersions;
+    private final AuthorStatistics authorStatistics;
+    private final RecentPostsFeed recentPostsFeed;
+    private final ChangeStream changeStream;
+    private final AuthorLocks authorLocks;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<Pending> queue;
+    private final Cache<String, PostIngestion> ingestions;
+    private final int capacity;
+    private final int maxBatch;
+    private final Duration offerTimeout;
+    private final Duration shutdownTimeout;
+    //submitters hold the read lock from the accepting check to the offer, so nothing is queued behind
+    //the writer's back once stop() has taken the write lock
+    private final ReadWriteLock acceptLock = new ReentrantReadWriteLock();
+    private volatile boolean accepting;
+    private volatile Thread writer;
+
+    public PostIngestService(UserService userService, UniqueNameRegistry uniqueNames,
+                             PostSearchIndex postSearchIndex, ResourceVersions resourceVersions,
+                             AuthorStatistics authorStatistics, RecentPostsFeed recentPostsFeed,
+                             ChangeStream changeStream, AuthorLocks authorLocks, EntityManager entityManager,
+                             TransactionTemplate transactionTemplate, MeterRegistry meterRegistry,
+                             @Value("${blog.posts.ingest.queue-capacity:10000}") int capacity,
+                             @Value("${blog.posts.ingest.max-batch:500}") int maxBatch,
+                             @Value("${blog.posts.ingest.offer-timeout:100ms}") Duration offerTimeout,
+                             @Value("${blog.posts.ingest.shutdown-timeout:30s}") Duration shutdownTimeout,
+                             @Value("${blog.posts.ingest.retention:1h}") Duration retention){
+        this.userService = userService;
+        this.uniqueNames = uniqueNames;
+        this.postSearchIndex = postSearchIndex;
+        this.resourceVersions = resourceVersions;
+        this.authorStatistics = authorStatistics;
+        this.recentPostsFeed = recentPostsFeed;
+        this.changeStream = changeStream;
+        this.authorLocks = authorLocks;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.capacity = capacity;
+        this.maxBatch = maxBatch;
+        this.offerTimeout = offerTimeout;
+        this.shutdownTimeout = shutdownTimeout;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.ingestions = Caffeine.newBuilder().expireAfterWrite(retention).maximumSize(capacity * 10L).build();
+        Gauge.builder("blog.posts.ingest.queue", queue, BlockingQueue::size)
+                .description("Posts accepted with ?async=true and not yet written")
+                .register(meterRegistry);
+    }
+
+    //the author comes from the user cache and the title is claimed in the registry, so a bad post
+    //is still turned away synchronously and usually without a query
+    public PostIngestion submit(Post post, Long authorId){
+        userService.getUser(authorId);
+        if(!uniqueNames.claimTitle(post.getTitle())){
+            throw new NotUniqueException("Post with title '" + post.getTitle() + "' already exists");
+        }
+        post.setId(null);
+        PostIngestion ingestion = new PostIngestion(UUID.randomUUID().toString(), authorId, post.getTitle());
+        ingestions.put(ingestion.getId(), ingestion);
+        boolean queued = false;
+        acceptLock.readLock().lock();
+        try {
+            queued = accepting && queue.offer(new Pending(ingestion, post, authorId),
+                    offerTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex){
+            Thread.currentThread().interrupt();
+        } finally {
+            acceptLock.readLock().unlock();
+        }
+        if(!queued){
+            ingestions.invalidate(ingestion.getId());
+            uniqueNames.releaseTitle(post.getTitle());
+            throw new IngestionQueueFullException(capacity);
+        }
+        return ingestion;
+    }
+
+    public PostIngestion getIngestion(String id){
+        PostIngestion ingestion = ingestions.getIfPresent(id);
+        if(ingestion == null){
+            throw new IngestionNotFoundException(id);
+        }
+        return ingestion;
+    }
+
+    @Override
+    public void start(){
+        accepting = true;
+        writer = new Thread(this::drain, "post-ingest-writer");
+        writer.start();
+    }
+
+    //runs after the web server stopped taking requests, see getPhase
+    @Override
+    public void stop(){
+        acceptLock.writeLock().lock();
+        try {
+            accepting = false;
+        } finally {
+            acceptLock.writeLock().unlock();
+        }
+        Thread current = writer;
+        if(current == null){
+            return;
+        }
+        try {
+            current.join(shutdownTimeout.toMillis());
+        } catch (InterruptedException ex){
+            Thread.currentThread().interrupt();
+        }
+        if(current.isAlive()){
+            log.warn("Gave up waiting for the post writer, {} queued posts were not written", queue.size());
+        }
+        writer = null;
+    }
+
+    @Override
+    public boolean isRunning(){
+        return writer != null;
+    }
+
+    //lower than the web server's phases, so it is stopped after the server stops taking requests
+    //and no request is left to queue more
+    @Override
+    public int getPhase(){
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void drain(){
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (accepting || !queue.isEmpty()){
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if(first == null){
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                write(batch);
+            } catch (InterruptedException ex){
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex){
+                //write() settles every item itself, this only keeps the writer alive
+                log.error("Post writer failed on a batch of {}", batch.size(), ex);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Pending> batch){
+        Set<Long> authors = batch.stream().map(Pending::authorId).collect(Collectors.toSet());
+        //an author deleted since the post was queued fails it on the foreign key, see AuthorLocks
+        try (AuthorLocks.Held held = authorLocks.posting(authors)){
+            authors.forEach(authorStatistics::beginWrite);
+            try {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        entityManager.unwrap(Session.class).setJdbcBatchSize(batch.size());
+                        batch.forEach(this::persist);
+                        entityManager.flush();
+                        entityManager.clear();
+                    });
+                    batch.forEach(this::created);
+                } catch (RuntimeException ex){
+                    //the whole group rolled back, write one by one so only the offending posts fail
+                    batch.forEach(pending -> pending.post().setId(null));
+                    batch.forEach(this::writeOne);
+                }
+            } finally {
+                authors.forEach(authorStatistics::endWrite);
+            }
+        }
+        resourceVersions.postsChanged();
+    }
+
+    private void writeOne(Pending pending){
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                persist(pending);
+                entityManager.flush();
+                entityManager.clear();
+            });
+            created(pending);
+        } catch (RuntimeException ex){
+            pending.post().setId(null);
+            if(UniqueConstraints.isViolated(ex, Post.TITLE_CONSTRAINT)){
+                pending.ingestion().fail("Post with title '" + pending.post().getTitle() + "' already exists");
+            }else{
+                uniqueNames.releaseTitle(pending.post().getTitle());
+                pending.ingestion().fail(String.valueOf(ex.getMessage()));
+            }
+        }
+    }
+
+    private void persist(Pending pending){
+        pending.post().setAuthor(entityManager.getReference(User.class, pending.authorId()));
+        entityManager.persist(pending.post());
+    }
+
+    private void created(Pending pending){
+        Post post = pending.post();
+        authorStatistics.recordCreated(pending.authorId(), post.getId());
+        postSearchIndex.index(post);
+        recentPostsFeed.index(post);
+        changeStream.publish("post", ChangeType.CREATED, post.getId(), post.getVersion());
+        pending.ingestion().created(post.getId());
+    }
+
+    private record Pending(PostIngestion ingestion, Post post, Long authorId) {}
+}
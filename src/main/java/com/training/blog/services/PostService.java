@@ -1,50 +1,320 @@
 package com.training.blog.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.training.blog.cache.ResourceVersions;
+import com.training.blog.cache.ResponseCache;
+import com.training.blog.changes.ChangeStream;
+import com.training.blog.changes.ChangeType;
 import com.training.blog.exceptions.NotUniqueException;
 import com.training.blog.exceptions.PostNotFoundException;
 import com.training.blog.exceptions.UserNotFoundException;
+import com.training.blog.exceptions.VersionConflictException;
+import com.training.blog.feed.FeedEntry;
+import com.training.blog.feed.RecentPostsFeed;
 import com.training.blog.models.Post;
+import com.training.blog.multiget.MultiGet;
+import com.training.blog.multiget.MultiGetResponse;
 import com.training.blog.models.User;
+import com.training.blog.pagination.Cursors;
+import com.training.blog.pagination.PageLimits;
+import com.training.blog.pagination.PageQuery;
+import com.training.blog.pagination.Pages;
+import com.training.blog.pagination.PageResponse;
+import com.training.blog.pagination.TimeKey;
+import com.training.blog.repository.EntityVersion;
+import com.training.blog.repository.PostRef;
 import com.training.blog.repository.PostRepository;
+import com.training.blog.repository.PostSummary;
 import com.training.blog.repository.UserRepository;
+import com.training.blog.repository.VersionedUpdates;
+import com.training.blog.patch.PostPatch;
+import com.training.blog.routing.ReadYourWrites;
+import com.training.blog.search.PostSearchIndex;
+import com.training.blog.search.SearchHit;
+import com.training.blog.stats.AuthorStatistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class PostService {
 
     PostRepository postRepository;
     UserRepository userRepository;
+    PageLimits pageLimits;
+    PostSearchIndex postSearchIndex;
+    Cache<Long, Post> postCache;
+    UniqueNameRegistry uniqueNames;
+    ResourceVersions resourceVersions;
+    VersionedUpdates versionedUpdates;
+    int excerptLength;
+    AuthorStatistics authorStatistics;
+    ResponseCache responseCache;
+    RecentPostsFeed recentPostsFeed;
+    ChangeStream changeStream;
+    MultiGet multiGet;
+    AuthorLocks authorLocks;
 
-    public PostService(PostRepository postRepository, UserRepository userRepository){
+    public PostService(PostRepository postRepository, UserRepository userRepository,
+                       PageLimits pageLimits, PostSearchIndex postSearchIndex,
+                       Cache<Long, Post> postCache, UniqueNameRegistry uniqueNames,
+                       ResourceVersions resourceVersions, VersionedUpdates versionedUpdates,
+                       AuthorStatistics authorStatistics, ResponseCache responseCache,
+                       RecentPostsFeed recentPostsFeed, ChangeStream changeStream, MultiGet multiGet,
+                       AuthorLocks authorLocks,
+                       @Value("${blog.posts.excerpt-length:120}") int excerptLength){
         this.postRepository = postRepository;
         this.userRepository = userRepository;
+        this.pageLimits = pageLimits;
+        this.postSearchIndex = postSearchIndex;
+        this.postCache = postCache;
+        this.uniqueNames = uniqueNames;
+        this.resourceVersions = resourceVersions;
+        this.versionedUpdates = versionedUpdates;
+        this.excerptLength = excerptLength;
+        this.authorStatistics = authorStatistics;
+        this.responseCache = responseCache;
+        this.recentPostsFeed = recentPostsFeed;
+        this.changeStream = changeStream;
+        this.multiGet = multiGet;
+        this.authorLocks = authorLocks;
+    }
+
+    //keyset paging: every page is an index range scan on id, no matter how deep
+    @Transactional(readOnly = true)
+    public PageResponse<Post> getPosts(PageQuery query){
+        return Pages.read(query, pageLimits.pageable(query), postRepository::findAllBy,
+                postRepository::findAllByIdGreaterThan, Post::getId, postRepository::count);
+    }
+
+    //same paging as getPosts, but only id, title, author id and an excerpt are selected
+    @Transactional(readOnly = true)
+    public PageResponse<PostSummary> getPostSummaries(PageQuery query){
+        return Pages.read(query, pageLimits.pageable(query),
+                pageable -> postRepository.findSummariesBy(excerptLength, pageable),
+                (after, pageable) -> postRepository.findSummariesByIdGreaterThan(after, excerptLength, pageable),
+                PostSummary::id, postRepository::count);
     }
 
+    //newest first across all authors, paged by creation time. pages inside the recent posts ring
+    //(always the first one) don't touch the database, not even for a transaction
+    public PageResponse<FeedEntry> getFeed(PageQuery query){
+        int limit = pageLimits.clamp(query.getLimit());
+        TimeKey after = query.getCursor() == null ? null : Cursors.decodeTime(query.getCursor());
+        List<FeedEntry> entries = recentPostsFeed.page(after, limit);
+        boolean hasNext;
+        if(entries != null){
+            hasNext = entries.size() > limit;
+            entries = hasNext ? entries.subList(0, limit) : entries;
+        }else{
+            PageRequest pageable = PageRequest.of(0, limit);
+            Slice<FeedEntry> slice = after == null
+                    ? postRepository.findFeed(excerptLength, pageable)
+                    : postRepository.findFeedBefore(after.createdAt(), after.id(), excerptLength, pageable);
+            entries = slice.getContent();
+            hasNext = slice.hasNext();
+        }
+        FeedEntry last = hasNext ? entries.get(entries.size() - 1) : null;
+        return new PageResponse<>(entries, last == null ? null : Cursors.encode(new TimeKey(last.createdAt(), last.id())));
+    }
+
+    //ranked by the in-memory index, the database is only hit for the k winning posts
+    @Transactional(readOnly = true)
+    public List<Post> searchPosts(String query, Integer limit){
+        List<SearchHit> hits = postSearchIndex.search(query, pageLimits.clamp(limit));
+        if(hits.isEmpty()){
+            return List.of();
+        }
+        Map<Long, Post> posts = postRepository.findAllByIdIn(hits.stream().map(SearchHit::postId).toList())
+                .stream().collect(Collectors.toMap(Post::getId, Function.identity()));
+        return hits.stream()
+                .map(hit -> posts.get(hit.postId()))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    //cached posts are used as they are and only the rest is read. what the database returns is not put
+    //in the cache: unlike getPost's per-key loader, a bulk load isn't ordered against an edit's
+    //invalidation and could leave behind a post that was changed while it was being read
+    @Transactional(readOnly = true)
+    public MultiGetResponse<Post> getPostsByIds(List<Long> ids){
+        return multiGet.fetch(ids, postCache, postRepository::findAllByIdIn, Post::getId);
+    }
+
+    //missing posts are not cached, the loader returning null leaves no entry behind.
+    //loaded from the primary, every later reader gets what the cache holds
     public Post getPost(Long id){
-        return postRepository.findById(id).orElseThrow(() -> new PostNotFoundException(id));
+        Post post = postCache.get(id, key -> ReadYourWrites.onPrimary(() -> postRepository.findById(key).orElse(null)));
+        if(post == null){
+            throw new PostNotFoundException(id);
+        }
+        return post;
     }
 
+    //a cached post already knows its version, otherwise only the version columns are read
+    public EntityVersion getPostVersion(Long id){
+        Post cached = postCache.getIfPresent(id);
+        if(cached != null){
+            return new EntityVersion(cached.getVersion(), cached.getLastModified());
+        }
+        return postRepository.findVersionById(id).orElseThrow(() -> new PostNotFoundException(id));
+    }
+
+    //the author can't be deleted from the check until the post is indexed, see AuthorLocks
     public Post createPost(Post post, Long id){
-        User author = userRepository.findById(id).orElseThrow(() -> new UserNotFoundException(id));
-        if(postRepository.findByTitle(post.getTitle()).isEmpty()){
+        try (AuthorLocks.Held held = authorLocks.posting(id)){
+            User author = userRepository.findById(id).orElseThrow(() -> new UserNotFoundException(id));
+            if(!uniqueNames.claimTitle(post.getTitle())){
+                throw titleNotUnique(post.getTitle());
+            }
             post.setAuthor(author);
-            postRepository.save(post);
-            return post;
-        }else{
-            throw new NotUniqueException("Post with title '" + post.getTitle() + "' already exists");
+            authorStatistics.beginWrite(id);
+            try {
+                saveWithTitle(post, post.getTitle());
+                authorStatistics.recordCreated(id, post.getId());
+            } finally {
+                authorStatistics.endWrite(id);
+            }
+            postSearchIndex.index(post);
+            recentPostsFeed.index(post);
+            changeStream.publish("post", ChangeType.CREATED, post.getId(), post.getVersion());
         }
+        resourceVersions.postsChanged();
+        return post;
     }
 
     public Post editPost(Post updatedPost){
         Post oldPost = postRepository.findById(updatedPost.getId()).orElseThrow(
                 () -> new PostNotFoundException(updatedPost.getId()));
+        String oldTitle = oldPost.getTitle();
+        boolean renamed = !oldTitle.equals(updatedPost.getTitle());
+        if(renamed && !uniqueNames.claimTitle(updatedPost.getTitle())){
+            throw titleNotUnique(updatedPost.getTitle());
+        }
         oldPost.setTitle(updatedPost.getTitle());
         oldPost.setBody(updatedPost.getBody());
-        return postRepository.save(oldPost);
+        Post savedPost = renamed ? saveWithTitle(oldPost, oldPost.getTitle()) : postRepository.save(oldPost);
+        if(renamed){
+            uniqueNames.releaseTitle(oldTitle);
+        }
+        //invalidate after the save committed, an in-flight load for the key finishes first
+        postCache.invalidate(savedPost.getId());
+        responseCache.invalidate("post", savedPost.getId());
+        postSearchIndex.index(savedPost);
+        recentPostsFeed.index(savedPost);
+        changeStream.publish("post", ChangeType.UPDATED, savedPost.getId(), savedPost.getVersion());
+        resourceVersions.postsChanged();
+        return savedPost;
+    }
+
+    //a single UPDATE ... WHERE id = ? AND version = ?, so concurrent editors can't overwrite each other.
+    //the old title is only read when the title changes, to hand it back to the registry
+    public Post patchPost(Long id, PostPatch patch, Long version){
+        Map<String, Object> changes = new LinkedHashMap<>();
+        String oldTitle = null;
+        if(patch.getTitle() != null){
+            String currentTitle = postRepository.findTitleById(id).orElseThrow(() -> new PostNotFoundException(id));
+            if(!currentTitle.equals(patch.getTitle())){
+                if(!uniqueNames.claimTitle(patch.getTitle())){
+                    throw titleNotUnique(patch.getTitle());
+                }
+                oldTitle = currentTitle;
+                changes.put("title", patch.getTitle());
+            }
+        }
+        if(patch.getBody() != null){
+            changes.put("body", patch.getBody());
+        }
+        boolean updated;
+        try {
+            updated = versionedUpdates.update(Post.class, id, version, changes);
+        } catch (DataIntegrityViolationException ex){
+            if(UniqueConstraints.isViolated(ex, Post.TITLE_CONSTRAINT)){
+                throw titleNotUnique(patch.getTitle());
+            }
+            releaseClaim(oldTitle, patch.getTitle());
+            throw ex;
+        } catch (RuntimeException ex){
+            releaseClaim(oldTitle, patch.getTitle());
+            throw ex;
+        }
+        if(!updated){
+            releaseClaim(oldTitle, patch.getTitle());
+            if(!postRepository.existsById(id)){
+                throw new PostNotFoundException(id);
+            }
+            throw new VersionConflictException("Post", id, version);
+        }
+        if(oldTitle != null){
+            uniqueNames.releaseTitle(oldTitle);
+        }
+        postCache.invalidate(id);
+        responseCache.invalidate("post", id);
+        Post patched = getPost(id);
+        postSearchIndex.index(patched);
+        recentPostsFeed.index(patched);
+        changeStream.publish("post", ChangeType.UPDATED, patched.getId(), patched.getVersion());
+        resourceVersions.postsChanged();
+        return patched;
     }
 
+    //one DELETE keyed on the id instead of loading the post first. only the title is read, for the
+    //registry, and the delete is conditional on it so a rename in between can't leave a title claimed
     public void deletePost(Long post_id){
-        Post post = postRepository.findById(post_id).orElse(null);
-        postRepository.delete(post);
+        PostRef post = postRepository.findRefById(post_id).orElseThrow(() -> new PostNotFoundException(post_id));
+        Long authorId = post.getAuthorId();
+        authorStatistics.beginWrite(authorId);
+        try {
+            while (postRepository.deleteByIdAndTitle(post_id, post.getTitle()) == 0){
+                post = postRepository.findRefById(post_id).orElseThrow(() -> new PostNotFoundException(post_id));
+            }
+            authorStatistics.recordDeleted(authorId, List.of(post_id));
+        } finally {
+            authorStatistics.endWrite(authorId);
+        }
+        uniqueNames.releaseTitle(post.getTitle());
+        postCache.invalidate(post_id);
+        responseCache.invalidate("post", post_id);
+        postSearchIndex.remove(post_id);
+        recentPostsFeed.remove(post_id);
+        changeStream.publish("post", ChangeType.DELETED, post_id, null);
+        resourceVersions.postsChanged();
+    }
+
+    //the title was claimed in the registry, the unique index catches anything the registry didn't know about
+    private Post saveWithTitle(Post post, String title){
+        try {
+            return postRepository.save(post);
+        } catch (DataIntegrityViolationException ex){
+            if(UniqueConstraints.isViolated(ex, Post.TITLE_CONSTRAINT)){
+                throw titleNotUnique(title);
+            }
+            uniqueNames.releaseTitle(title);
+            throw ex;
+        } catch (RuntimeException ex){
+            uniqueNames.releaseTitle(title);
+            throw ex;
+        }
+    }
+
+    //only a title this request claimed goes back, oldTitle is set exactly when it claimed one
+    private void releaseClaim(String oldTitle, String claimedTitle){
+        if(oldTitle != null){
+            uniqueNames.releaseTitle(claimedTitle);
+        }
+    }
+
+    private NotUniqueException titleNotUnique(String title){
+        return new NotUniqueException("Post with title '" + title + "' already exists");
     }
 }
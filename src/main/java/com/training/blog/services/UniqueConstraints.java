@@ -0,0 +1,25 @@
+package com.training.blog.services;
+
+import org.hibernate.exception.ConstraintViolationException;
+
+import java.util.Locale;
+
+final class UniqueConstraints {
+
+    private UniqueConstraints(){}
+
+    static boolean isViolated(Throwable ex, String constraint){
+        String expected = constraint.toLowerCase(Locale.ROOT);
+        for(Throwable cause = ex; cause != null; cause = cause.getCause()){
+            if(cause instanceof ConstraintViolationException violation
+                    && violation.getConstraintName() != null
+                    && violation.getConstraintName().toLowerCase(Locale.ROOT).contains(expected)){
+                return true;
+            }
+            if(cause.getMessage() != null && cause.getMessage().toLowerCase(Locale.ROOT).contains(expected)){
+                return true;
+            }
+        }
+        return false;
+    }
+}
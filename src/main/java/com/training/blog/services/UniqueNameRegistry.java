@@ -0,0 +1,60 @@
+package com.training.blog.services;
+
+import com.training.blog.repository.PostRepository;
+import com.training.blog.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+//in-memory copy of the taken usernames and post titles so duplicates are turned away without a query
+//the unique constraints in the database stay the source of truth for names this registry doesn't know
+@Component
+public class UniqueNameRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(UniqueNameRegistry.class);
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+
+    private final Set<String> usernames = ConcurrentHashMap.newKeySet();
+    private final Set<String> titles = ConcurrentHashMap.newKeySet();
+
+    public UniqueNameRegistry(UserRepository userRepository, PostRepository postRepository){
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm(){
+        usernames.addAll(userRepository.findAllUsernames());
+        titles.addAll(postRepository.findAllTitles());
+        log.info("Loaded {} usernames and {} post titles", usernames.size(), titles.size());
+    }
+
+    //atomic, so of two concurrent requests for the same name only one gets true
+    public boolean claimUsername(String username){
+        return usernames.add(username);
+    }
+
+    public void releaseUsername(String username){
+        usernames.remove(username);
+    }
+
+    public boolean claimTitle(String title){
+        return titles.add(title);
+    }
+
+    public void releaseTitle(String title){
+        titles.remove(title);
+    }
+
+    public void releaseTitles(Collection<String> released){
+        titles.removeAll(released);
+    }
+}
@@ -0,0 +1,156 @@
+package com.training.blog.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.training.blog.cache.ResourceVersions;
+import com.training.blog.cache.ResponseCache;
+import com.training.blog.changes.ChangeStream;
+import com.training.blog.changes.ChangeType;
+import com.training.blog.deletion.UserDeletion;
+import com.training.blog.exceptions.DeletionNotFoundException;
+import com.training.blog.exceptions.UserNotFoundException;
+import com.training.blog.feed.RecentPostsFeed;
+import com.training.blog.models.Post;
+import com.training.blog.repository.PostKey;
+import com.training.blog.repository.PostRepository;
+import com.training.blog.repository.UserRepository;
+import com.training.blog.search.PostSearchIndex;
+import com.training.blog.stats.AuthorStatistics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+//deletes a prolific user in the background: the posts go first in chunks, each in its own short
+//transaction, then the user row. readers and writers of other authors never wait on one huge delete
+@Service
+public class UserDeletionService {
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final UserService userService;
+    private final UniqueNameRegistry uniqueNames;
+    private final PostSearchIndex postSearchIndex;
+    private final Cache<Long, Post> postCache;
+    private final ResourceVersions resourceVersions;
+    private final AuthorStatistics authorStatistics;
+    private final RecentPostsFeed recentPostsFeed;
+    private final ChangeStream changeStream;
+    private final ResponseCache responseCache;
+    private final AsyncTaskExecutor executor;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    //finished deletions stay around for a while so clients can see how they ended
+    private final Cache<String, UserDeletion> deletions;
+    private final ConcurrentMap<Long, UserDeletion> running = new ConcurrentHashMap<>();
+
+    public UserDeletionService(UserRepository userRepository, PostRepository postRepository,
+                               UserService userService, UniqueNameRegistry uniqueNames,
+                               PostSearchIndex postSearchIndex, Cache<Long, Post> postCache,
+                               ResourceVersions resourceVersions, AuthorStatistics authorStatistics,
+                               RecentPostsFeed recentPostsFeed, ChangeStream changeStream,
+                               ResponseCache responseCache, TransactionTemplate transactionTemplate,
+                               @Qualifier("applicationTaskExecutor") AsyncTaskExecutor executor,
+                               @Value("${blog.users.delete-chunk-size:500}") int chunkSize,
+                               @Value("${blog.users.deletion-retention:1h}") Duration retention){
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.userService = userService;
+        this.uniqueNames = uniqueNames;
+        this.postSearchIndex = postSearchIndex;
+        this.postCache = postCache;
+        this.resourceVersions = resourceVersions;
+        this.authorStatistics = authorStatistics;
+        this.recentPostsFeed = recentPostsFeed;
+        this.changeStream = changeStream;
+        this.responseCache = responseCache;
+        this.executor = executor;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.deletions = Caffeine.newBuilder().expireAfterWrite(retention).maximumSize(10_000).build();
+    }
+
+    //a second request for a user that is already being deleted gets the running deletion back
+    public UserDeletion start(Long userId){
+        if(!userRepository.existsById(userId)){
+            throw new UserNotFoundException(userId);
+        }
+        UserDeletion deletion = new UserDeletion(UUID.randomUUID().toString(), userId,
+                postRepository.countByAuthorId(userId));
+        UserDeletion existing = running.putIfAbsent(userId, deletion);
+        if(existing != null){
+            return existing;
+        }
+        deletions.put(deletion.getId(), deletion);
+        executor.execute(() -> run(deletion));
+        return deletion;
+    }
+
+    public UserDeletion getDeletion(String id){
+        UserDeletion deletion = deletions.getIfPresent(id);
+        if(deletion == null){
+            throw new DeletionNotFoundException(id);
+        }
+        return deletion;
+    }
+
+    private void run(UserDeletion deletion){
+        Long userId = deletion.getUserId();
+        try {
+            List<PostKey> chunk;
+            while (!(chunk = postRepository.findKeysByAuthorId(userId, PageRequest.of(0, chunkSize))).isEmpty()){
+                List<Long> ids = chunk.stream().map(PostKey::getId).toList();
+                List<Long> deleted;
+                authorStatistics.beginWrite(userId);
+                try {
+                    deleted = deleteExisting(ids);
+                    authorStatistics.recordDeleted(userId, deleted);
+                } finally {
+                    authorStatistics.endWrite(userId);
+                }
+                //a post deleted on its own meanwhile was counted and cleaned up by that delete,
+                //its title may already belong to a new post
+                Set<Long> gone = new HashSet<>(deleted);
+                uniqueNames.releaseTitles(chunk.stream()
+                        .filter(key -> gone.contains(key.getId()))
+                        .map(PostKey::getTitle)
+                        .toList());
+                postCache.invalidateAll(ids);
+                responseCache.invalidateAll("post", ids);
+                postSearchIndex.removeAll(ids);
+                recentPostsFeed.removeAll(ids);
+                changeStream.publishAll("post", ChangeType.DELETED, deleted);
+                resourceVersions.postsChanged();
+                deletion.recordDeleted(deleted.size());
+            }
+            //anything posted since the last chunk goes with the user through the cascade
+            userService.deleteUser(userId);
+            deletion.complete();
+        } catch (RuntimeException ex){
+            deletion.fail(String.valueOf(ex.getMessage()));
+        } finally {
+            running.remove(userId, deletion);
+        }
+    }
+
+    //the ids this delete really removed, not the ones a concurrent deletePost got to first
+    private List<Long> deleteExisting(List<Long> ids){
+        return transactionTemplate.execute(status -> {
+            List<Long> existing = postRepository.lockIdsByIdIn(ids);
+            if(!existing.isEmpty()){
+                postRepository.deleteAllByIdIn(existing);
+            }
+            return existing;
+        });
+    }
+}
@@ -1,16 +1,41 @@
 package com.training.blog.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.training.blog.cache.ResourceVersions;
+import com.training.blog.cache.ResponseCache;
+import com.training.blog.changes.ChangeStream;
+import com.training.blog.changes.ChangeType;
 import com.training.blog.exceptions.NotUniqueException;
 import com.training.blog.exceptions.UserNotFoundException;
+import com.training.blog.exceptions.VersionConflictException;
+import com.training.blog.feed.RecentPostsFeed;
 import com.training.blog.models.Post;
 import com.training.blog.models.User;
+import com.training.blog.multiget.MultiGet;
+import com.training.blog.multiget.MultiGetResponse;
+import com.training.blog.pagination.PageLimits;
+import com.training.blog.pagination.PageQuery;
+import com.training.blog.pagination.PageResponse;
+import com.training.blog.pagination.Pages;
+import com.training.blog.repository.EntityVersion;
+import com.training.blog.repository.PostKey;
 import com.training.blog.repository.PostRepository;
+import com.training.blog.repository.PostSummary;
 import com.training.blog.repository.UserRepository;
+import com.training.blog.repository.VersionedUpdates;
+import com.training.blog.patch.UserPatch;
+import com.training.blog.routing.ReadYourWrites;
+import com.training.blog.search.PostSearchIndex;
+import com.training.blog.stats.AuthorStatistics;
+import com.training.blog.stats.AuthorStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 @Service
 public class UserService {
@@ -19,40 +44,254 @@ public class UserService {
 
     private final PostRepository postRepository;
 
-    public UserService(UserRepository userRepository, PostRepository postRepository){
+    private final PageLimits pageLimits;
+
+    private final PostSearchIndex postSearchIndex;
+
+    private final Cache<Long, User> userCache;
+
+    private final Cache<Long, Post> postCache;
+
+    private final UniqueNameRegistry uniqueNames;
+
+    private final ResourceVersions resourceVersions;
+
+    private final VersionedUpdates versionedUpdates;
+
+    private final AuthorStatistics authorStatistics;
+
+    private final RecentPostsFeed recentPostsFeed;
+
+    private final ChangeStream changeStream;
+
+    private final ResponseCache responseCache;
+
+    private final MultiGet multiGet;
+
+    private final AuthorLocks authorLocks;
+
+    private final int excerptLength;
+
+    public UserService(UserRepository userRepository, PostRepository postRepository,
+                       PageLimits pageLimits, PostSearchIndex postSearchIndex,
+                       Cache<Long, User> userCache, Cache<Long, Post> postCache,
+                       UniqueNameRegistry uniqueNames, ResourceVersions resourceVersions,
+                       VersionedUpdates versionedUpdates, AuthorStatistics authorStatistics,
+                       RecentPostsFeed recentPostsFeed, ChangeStream changeStream,
+                       ResponseCache responseCache, MultiGet multiGet, AuthorLocks authorLocks,
+                       @Value("${blog.posts.excerpt-length:120}") int excerptLength){
         this.userRepository = userRepository;
         this.postRepository = postRepository;
+        this.pageLimits = pageLimits;
+        this.postSearchIndex = postSearchIndex;
+        this.userCache = userCache;
+        this.postCache = postCache;
+        this.uniqueNames = uniqueNames;
+        this.resourceVersions = resourceVersions;
+        this.versionedUpdates = versionedUpdates;
+        this.authorStatistics = authorStatistics;
+        this.recentPostsFeed = recentPostsFeed;
+        this.changeStream = changeStream;
+        this.responseCache = responseCache;
+        this.multiGet = multiGet;
+        this.authorLocks = authorLocks;
+        this.excerptLength = excerptLength;
+    }
+
+    @Transactional(readOnly = true)
+    public PageResponse<User> getUsers(PageQuery query){
+        return Pages.read(query, pageLimits.pageable(query), userRepository::findAllBy,
+                userRepository::findAllByIdGreaterThan, User::getId, userRepository::count);
     }
 
+    //same as PostService.getPostsByIds, cache hits first and the misses in chunked IN queries
+    @Transactional(readOnly = true)
+    public MultiGetResponse<User> getUsersByIds(List<Long> ids){
+        return multiGet.fetch(ids, userCache, userRepository::findAllByIdIn, User::getId);
+    }
+
+    //loaded from the primary, every later reader gets what the cache holds
     public User getUser(Long id){
-        return userRepository.findById(id).orElseThrow(() -> new UserNotFoundException(id));
+        User user = userCache.get(id, key -> ReadYourWrites.onPrimary(() -> userRepository.findById(key).orElse(null)));
+        if(user == null){
+            throw new UserNotFoundException(id);
+        }
+        return user;
+    }
+
+    //authors with posts are always known to the statistics, so only a user without posts costs a query
+    public AuthorStats getUserStats(Long id){
+        AuthorStats stats = authorStatistics.get(id);
+        if(stats != null){
+            return stats;
+        }
+        if(!userRepository.existsById(id)){
+            throw new UserNotFoundException(id);
+        }
+        return new AuthorStats(id, 0, null);
+    }
+
+    //a cached user already knows its version, otherwise only the version columns are read
+    public EntityVersion getUserVersion(Long id){
+        User cached = userCache.getIfPresent(id);
+        if(cached != null){
+            return new EntityVersion(cached.getVersion(), cached.getLastModified());
+        }
+        return userRepository.findVersionById(id).orElseThrow(() -> new UserNotFoundException(id));
     }
 
     public User createUser(User user){
-        if(userRepository.findByUsername(user.getUsername()).isEmpty()) {
-            userRepository.save(user);
-        }else{
-            throw new NotUniqueException("User with name " + user.getUsername() + " already exists");
+        if(!uniqueNames.claimUsername(user.getUsername())){
+            throw usernameNotUnique(user.getUsername());
         }
-        return user;
+        User createdUser = saveWithUsername(user, user.getUsername());
+        resourceVersions.usersChanged();
+        changeStream.publish("user", ChangeType.CREATED, createdUser.getId(), createdUser.getVersion());
+        return createdUser;
     }
 
     public User updateUser(User newUser, Long id){
         User oldUser = userRepository.findById(id).orElseThrow(() -> new UserNotFoundException(id));
+        String oldUsername = oldUser.getUsername();
+        boolean renamed = !oldUsername.equals(newUser.getUsername());
+        if(renamed && !uniqueNames.claimUsername(newUser.getUsername())){
+            throw usernameNotUnique(newUser.getUsername());
+        }
         oldUser.setUsername(newUser.getUsername());
-        return userRepository.save(oldUser);
+        User savedUser = renamed ? saveWithUsername(oldUser, oldUser.getUsername()) : userRepository.save(oldUser);
+        if(renamed){
+            uniqueNames.releaseUsername(oldUsername);
+        }
+        userCache.invalidate(id);
+        responseCache.invalidate("user", id);
+        resourceVersions.usersChanged();
+        changeStream.publish("user", ChangeType.UPDATED, id, savedUser.getVersion());
+        return savedUser;
+    }
+
+    //a single UPDATE ... WHERE id = ? AND version = ?, so concurrent editors can't overwrite each other
+    public User patchUser(Long id, UserPatch patch, Long version){
+        Map<String, Object> changes = new LinkedHashMap<>();
+        String oldUsername = null;
+        if(patch.getUsername() != null){
+            String currentUsername = userRepository.findUsernameById(id).orElseThrow(() -> new UserNotFoundException(id));
+            if(!currentUsername.equals(patch.getUsername())){
+                if(!uniqueNames.claimUsername(patch.getUsername())){
+                    throw usernameNotUnique(patch.getUsername());
+                }
+                oldUsername = currentUsername;
+                changes.put("username", patch.getUsername());
+            }
+        }
+        boolean updated;
+        try {
+            updated = versionedUpdates.update(User.class, id, version, changes);
+        } catch (DataIntegrityViolationException ex){
+            if(UniqueConstraints.isViolated(ex, User.USERNAME_CONSTRAINT)){
+                throw usernameNotUnique(patch.getUsername());
+            }
+            releaseClaim(oldUsername, patch.getUsername());
+            throw ex;
+        } catch (RuntimeException ex){
+            releaseClaim(oldUsername, patch.getUsername());
+            throw ex;
+        }
+        if(!updated){
+            releaseClaim(oldUsername, patch.getUsername());
+            if(!userRepository.existsById(id)){
+                throw new UserNotFoundException(id);
+            }
+            throw new VersionConflictException("User", id, version);
+        }
+        if(oldUsername != null){
+            uniqueNames.releaseUsername(oldUsername);
+        }
+        userCache.invalidate(id);
+        responseCache.invalidate("user", id);
+        resourceVersions.usersChanged();
+        User patchedUser = getUser(id);
+        changeStream.publish("user", ChangeType.UPDATED, id, patchedUser.getVersion());
+        return patchedUser;
+    }
+
+    //served from the (author_id, id) index so pages of prolific authors stay cheap
+    @Transactional(readOnly = true)
+    public PageResponse<Post> getUserPosts(Long id, PageQuery query){
+        if(!userRepository.existsById(id)){
+            throw new UserNotFoundException(id);
+        }
+        return Pages.read(query, pageLimits.pageable(query),
+                pageable -> postRepository.findAllByAuthorId(id, pageable),
+                (after, pageable) -> postRepository.findAllByAuthorIdAndIdGreaterThan(id, after, pageable),
+                Post::getId, () -> postRepository.countByAuthorId(id));
     }
 
-    public List<Post> getUserPosts(Long id){
-        User user = userRepository.findById(id).orElseThrow(() -> new UserNotFoundException(id));
-        List<Post> posts = new ArrayList<>();
-        posts = postRepository.findAllByAuthorId(id);
-        return posts;
+    //same paging as getUserPosts, but only id, title, author id and an excerpt are selected
+    @Transactional(readOnly = true)
+    public PageResponse<PostSummary> getUserPostSummaries(Long id, PageQuery query){
+        if(!userRepository.existsById(id)){
+            throw new UserNotFoundException(id);
+        }
+        return Pages.read(query, pageLimits.pageable(query),
+                pageable -> postRepository.findSummariesByAuthorId(id, excerptLength, pageable),
+                (after, pageable) -> postRepository.findSummariesByAuthorIdAndIdGreaterThan(id, after, excerptLength, pageable),
+                PostSummary::id, () -> postRepository.countByAuthorId(id));
     }
 
+    //one DELETE keyed on the id, conditional on the username that gets released. for users with
+    //many posts see UserDeletionService, which takes the posts out in small transactions first
     public void deleteUser(Long id){
-        User user = userRepository.findById(id).orElse(null);
-        userRepository.delete(user);
+        String username;
+        List<PostKey> posts;
+        //no post can be committed for the user between reading its posts and deleting it, see AuthorLocks
+        try (AuthorLocks.Held held = authorLocks.deleting(id)){
+            do {
+                username = userRepository.findUsernameById(id).orElseThrow(() -> new UserNotFoundException(id));
+                //posts go with the user through the cascade, so take them out of the index as well
+                posts = postRepository.findKeysByAuthorId(id);
+            } while (userRepository.deleteByIdAndUsername(id, username) == 0);
+        }
+        List<Long> postIds = posts.stream().map(PostKey::getId).toList();
+        uniqueNames.releaseUsername(username);
+        uniqueNames.releaseTitles(posts.stream().map(PostKey::getTitle).toList());
+        authorStatistics.removeAuthor(id);
+        userCache.invalidate(id);
+        responseCache.invalidate("user", id);
+        postCache.invalidateAll(postIds);
+        responseCache.invalidateAll("post", postIds);
+        postSearchIndex.removeAll(postIds);
+        recentPostsFeed.removeAll(postIds);
+        changeStream.publishAll("post", ChangeType.DELETED, postIds);
+        changeStream.publish("user", ChangeType.DELETED, id, null);
+        resourceVersions.usersChanged();
+        resourceVersions.postsChanged();
+    }
+
+    //the username was claimed in the registry, the unique index catches anything the registry didn't know about
+    private User saveWithUsername(User user, String username){
+        try {
+            return userRepository.save(user);
+        } catch (DataIntegrityViolationException ex){
+            if(UniqueConstraints.isViolated(ex, User.USERNAME_CONSTRAINT)){
+                throw usernameNotUnique(username);
+            }
+            uniqueNames.releaseUsername(username);
+            throw ex;
+        } catch (RuntimeException ex){
+            uniqueNames.releaseUsername(username);
+            throw ex;
+        }
+    }
+
+    //only a username this request claimed goes back, oldUsername is set exactly when it claimed one
+    private void releaseClaim(String oldUsername, String claimedUsername){
+        if(oldUsername != null){
+            uniqueNames.releaseUsername(claimedUsername);
+        }
+    }
+
+    private NotUniqueException usernameNotUnique(String username){
+        return new NotUniqueException("User with name " + username + " already exists");
     }
 
 }
@@ -0,0 +1,158 @@
+package com.training.blog.stats;
+
+import com.training.blog.repository.AuthorPostCount;
+import com.training.blog.repository.PostRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+//per-author post counts and newest post id, kept up to date by the services that write posts so
+//reading them is a map lookup. post writers wrap the commit in beginWrite/endWrite and record
+//their effect in between, reconcile() recomputes everything from the database and only overwrites
+//an author that had no write in flight or finished while it was counting.
+//only beginWrite adds an author, so a write that was in flight when removeAuthor dropped it can't
+//bring it back, and an author left with no posts and no writes is dropped as nothing is known about it
+@Component
+public class AuthorStatistics {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthorStatistics.class);
+
+    private final PostRepository postRepository;
+    private final ConcurrentMap<Long, Counters> counters = new ConcurrentHashMap<>();
+
+    public AuthorStatistics(PostRepository postRepository){
+        this.postRepository = postRepository;
+    }
+
+    //returns null for an author nothing is known about, which is also an author without posts
+    public AuthorStats get(Long authorId){
+        Counters current = counters.get(authorId);
+        return current == null ? null : new AuthorStats(authorId, current.posts(), current.latestPostId());
+    }
+
+    public void beginWrite(Long authorId){
+        counters.compute(authorId, (id, current) -> orEmpty(current).withPending(1));
+    }
+
+    //call it whether or not the write committed
+    public void endWrite(Long authorId){
+        counters.computeIfPresent(authorId, (id, current) -> {
+            Counters ended = current.withPending(-1);
+            return ended.isEmpty() ? null : ended;
+        });
+    }
+
+    public void recordCreated(Long authorId, Long postId){
+        counters.computeIfPresent(authorId, (id, counted) -> {
+            Long latest = counted.latestPostId() == null ? postId : Math.max(counted.latestPostId(), postId);
+            return counted.with(counted.posts() + 1, latest);
+        });
+    }
+
+    //the newest post is only looked up again when it was one of the deleted ones
+    public void recordDeleted(Long authorId, Collection<Long> postIds){
+        Counters before = counters.get(authorId);
+        Long latestBefore = before == null ? null : before.latestPostId();
+        Long replacement = latestBefore != null && postIds.contains(latestBefore)
+                ? postRepository.findLatestIdByAuthorId(authorId)
+                : null;
+        counters.computeIfPresent(authorId, (id, counted) -> {
+            //a post created meanwhile may already have replaced the deleted latest
+            Long latest = counted.latestPostId() != null && postIds.contains(counted.latestPostId())
+                    ? replacement : counted.latestPostId();
+            return counted.with(Math.max(0, counted.posts() - postIds.size()), latest);
+        });
+    }
+
+    //after the user and with it all their posts are gone
+    public void removeAuthor(Long authorId){
+        counters.remove(authorId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${blog.stats.reconcile-interval:PT1H}",
+            initialDelayString = "${blog.stats.reconcile-interval:PT1H}")
+    public void reconcile(){
+        long start = System.currentTimeMillis();
+        //only authors that were quiet before the count can be trusted with its result
+        Map<Long, Long> quiet = new HashMap<>();
+        counters.forEach((id, current) -> {
+            if(current.pending() == 0){
+                quiet.put(id, current.modifications());
+            }
+        });
+        Map<Long, AuthorPostCount> counted = new HashMap<>();
+        for(AuthorPostCount row : postRepository.countPostsByAuthor()){
+            counted.put(row.getAuthorId(), row);
+        }
+        int corrected = 0;
+        for(Long id : union(quiet.keySet(), counted.keySet())){
+            AuthorPostCount row = counted.get(id);
+            long posts = row == null ? 0 : row.getPosts();
+            Long latest = row == null ? null : row.getLatestPostId();
+            Long seen = quiet.get(id);
+            boolean[] changed = {false};
+            counters.compute(id, (key, current) -> {
+                if(current == null){
+                    //never written since startup, or removed with its user after the count
+                    if(seen != null || row == null){
+                        return null;
+                    }
+                    changed[0] = true;
+                    return new Counters(posts, latest, 0, 0);
+                }
+                if(seen == null || current.pending() != 0 || current.modifications() != seen){
+                    return current;
+                }
+                if(current.posts() == posts && Objects.equals(current.latestPostId(), latest)){
+                    return current;
+                }
+                changed[0] = true;
+                return new Counters(posts, latest, 0, current.modifications());
+            });
+            if(changed[0]){
+                corrected++;
+            }
+        }
+        log.info("Reconciled author statistics for {} authors, {} corrected, in {} ms",
+                counted.size(), corrected, System.currentTimeMillis() - start);
+    }
+
+    private static Set<Long> union(Set<Long> first, Set<Long> second){
+        Set<Long> all = new HashSet<>(first);
+        all.addAll(second);
+        return all;
+    }
+
+    private static Counters orEmpty(Counters current){
+        return current == null ? new Counters(0, null, 0, 0) : current;
+    }
+
+    //immutable so every change is a single compute on the map
+    private record Counters(long posts, Long latestPostId, int pending, long modifications) {
+
+        boolean isEmpty(){
+            return posts == 0 && pending == 0;
+        }
+
+        Counters withPending(int delta){
+            return new Counters(posts, latestPostId, pending + delta, modifications + 1);
+        }
+
+        Counters with(long posts, Long latestPostId){
+            return new Counters(posts, latestPostId, pending, modifications + 1);
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.training.blog.stats;
+
+//post count and newest post of one author, latestPostId is null when the author has no posts
+public record AuthorStats(Long userId, long posts, Long latestPostId) {
+}
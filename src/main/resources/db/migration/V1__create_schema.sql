@@ -0,0 +1,33 @@
+-- the schema the entities map to, Hibernate only validates it (spring.jpa.hibernate.ddl-auto=validate).
+-- identifiers are quoted because hibernate.globally_quoted_identifiers is on, constraint names are
+-- left unquoted, UniqueConstraints matches them case-insensitively
+
+-- ids are handed out in blocks of 50, matching allocationSize on the entities
+create sequence "user_seq" start with 1 increment by 50;
+create sequence "post_seq" start with 1 increment by 50;
+
+create table "user" (
+    "id" bigint not null,
+    "username" varchar(255) not null,
+    "version" bigint default 0,
+    "last_modified" timestamp(6) with time zone default current_timestamp,
+    constraint pk_user primary key ("id"),
+    -- also the index behind findByUsername
+    constraint uk_user_username unique ("username")
+);
+
+create table "post" (
+    "id" bigint not null,
+    "title" varchar(255) not null,
+    "body" varchar(255) not null,
+    "version" bigint default 0,
+    "last_modified" timestamp(6) with time zone default current_timestamp,
+    "author_id" bigint not null,
+    constraint pk_post primary key ("id"),
+    -- also the index behind findByTitle
+    constraint uk_post_title unique ("title"),
+    constraint fk_post_author foreign key ("author_id") references "user" ("id") on delete cascade
+);
+
+-- an author's posts in id order, for findAllByAuthorId and the keyset pages, without a sort
+create index "idx_post_author_id" on "post" ("author_id", "id");
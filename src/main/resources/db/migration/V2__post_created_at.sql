@@ -0,0 +1,9 @@
+-- when each post was created, the order of the recent posts feed. posts that are already there
+-- get their last change as the closest thing to a creation time
+alter table "post" add column "created_at" timestamp(6) with time zone;
+update "post" set "created_at" = coalesce("last_modified", current_timestamp);
+alter table "post" alter column "created_at" set default current_timestamp;
+alter table "post" alter column "created_at" set not null;
+
+-- newest first with the id breaking ties, the feed and its keyset pages read it without a sort
+create index "idx_post_created_at" on "post" ("created_at" desc, "id" desc);
@@ -0,0 +1,127 @@
+package com.training.blog.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.training.blog.models.Post;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    void testSerializesOncePerVersion(){
+        ResponseCache cache = cache(DataSize.ofMegabytes(1));
+        AtomicInteger loads = new AtomicInteger();
+        Post post = post(1L, 3L, "short body");
+
+        SerializedResponse first = cache.get("post", 1L, 3L, () -> { loads.incrementAndGet(); return post; }, Post::getVersion);
+        SerializedResponse second = cache.get("post", 1L, 3L, () -> { loads.incrementAndGet(); return post; }, Post::getVersion);
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+
+        post.setVersion(4L);
+        SerializedResponse newer = cache.get("post", 1L, 4L, () -> { loads.incrementAndGet(); return post; }, Post::getVersion);
+        assertNotSame(first, newer);
+        assertEquals(2, loads.get());
+
+        cache.invalidate("post", 1L);
+        cache.get("post", 1L, 4L, () -> { loads.incrementAndGet(); return post; }, Post::getVersion);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void testABodyLoadedBehindAnEditIsNotCachedUnderTheNewVersion(){
+        ResponseCache cache = cache(DataSize.ofMegabytes(1));
+        Post old = post(1L, 3L, "before the edit");
+        Post edited = post(1L, 4L, "after the edit");
+
+        //the reader saw version 4 but its load returned version 3, and the edit's invalidation ran before it stored it
+        SerializedResponse raced = cache.get("post", 1L, 4L, () -> { cache.invalidate("post", 1L); return old; },
+                Post::getVersion);
+        assertEquals(3L, raced.version());
+
+        AtomicInteger loads = new AtomicInteger();
+        SerializedResponse next = cache.get("post", 1L, 4L, () -> { loads.incrementAndGet(); return edited; },
+                Post::getVersion);
+        assertEquals(1, loads.get());
+        assertEquals(4L, next.version());
+        assertSame(next, cache.get("post", 1L, 4L, () -> old, Post::getVersion));
+    }
+
+    @Test
+    void testGzipVariantOnlyForLargeEnoughBodies() throws IOException {
+        ResponseCache cache = cache(DataSize.ofMegabytes(1));
+        SerializedResponse small = cache.get("post", 1L, 0L, () -> post(1L, 0L, "tiny"), Post::getVersion);
+        assertNull(small.gzip());
+        ResponseEntity<byte[]> plain = small.toResponse("gzip");
+        assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+
+        Post large = post(2L, 0L, "compressible ".repeat(18));
+        SerializedResponse serialized = cache.get("post", 2L, 0L, () -> large, Post::getVersion);
+        ResponseEntity<byte[]> gzipped = serialized.toResponse("deflate, gzip");
+        assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, gzipped.getHeaders().getFirst(HttpHeaders.VARY));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getBody()))){
+            assertArrayEquals(objectMapper.writeValueAsBytes(large), in.readAllBytes());
+        }
+        assertSame(serialized.json(), serialized.toResponse(null).getBody());
+        assertSame(serialized.json(), serialized.toResponse("gzip;q=0, identity").getBody());
+    }
+
+    @Test
+    void testMalformedQValueFallsBackToThePlainBody(){
+        assertFalse(SerializedResponse.acceptsGzip("gzip;q=x"));
+        assertFalse(SerializedResponse.acceptsGzip("gzip;q="));
+        assertTrue(SerializedResponse.acceptsGzip("gzip;q=x, gzip;q=0.5"));
+        assertTrue(SerializedResponse.acceptsGzip("gzip; q=1"));
+
+        ResponseCache cache = cache(DataSize.ofMegabytes(1));
+        SerializedResponse serialized = cache.get("post", 3L, 0L, () -> post(3L, 0L, "compressible ".repeat(18)),
+                Post::getVersion);
+        ResponseEntity<byte[]> response = serialized.toResponse("gzip;q=x");
+        assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertSame(serialized.json(), response.getBody());
+    }
+
+    @Test
+    void testHeldBytesStayWithinTheConfiguredSize() throws InterruptedException {
+        ResponseCache cache = cache(DataSize.ofKilobytes(64));
+        for(long id = 1; id <= 2000; id++){
+            long postId = id;
+            cache.get("post", postId, 0L, () -> post(postId, 0L, "body " + postId), Post::getVersion);
+        }
+        //every entry weighs more than 128 bytes, eviction runs asynchronously
+        long bound = 64 * 1024 / 128;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.statistics().getSize() > bound && System.currentTimeMillis() < deadline){
+            Thread.sleep(10);
+        }
+        CacheStatistics statistics = cache.statistics();
+        assertTrue(statistics.getSize() <= bound, "size " + statistics.getSize());
+        assertTrue(statistics.getEvictions() > 0);
+    }
+
+    private ResponseCache cache(DataSize maximumSize){
+        return new ResponseCache(objectMapper, maximumSize, Duration.ofMinutes(10), DataSize.ofBytes(256));
+    }
+
+    private static Post post(Long id, Long version, String body){
+        Post post = new Post();
+        post.setId(id);
+        post.setVersion(version);
+        post.setTitle("title " + id);
+        post.setBody(body);
+        return post;
+    }
+}
@@ -0,0 +1,131 @@
+package com.training.blog.changes;
+
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.services.PostService;
+import com.training.blog.services.UserService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+//post creation latency from concurrent clients with nobody listening, with many subscribers that keep up
+//and with many that never read. writers only hand events to the dispatcher, so the last two should
+//cost about what the fan-out takes from the CPU and no more
+//run with: mvn test -Pbenchmark -Dtest=ChangeStreamBenchmarkTest [-Dbench.posts=5000] [-Dbench.subscribers=500]
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:changesbench",
+        "blog.ratelimit.enabled=false"
+})
+@DirtiesContext
+class ChangeStreamBenchmarkTest {
+
+    @Autowired
+    private ChangeStream changeStream;
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void writeLatencyWithSubscribers() throws Exception {
+        int posts = Integer.getInteger("bench.posts", 5_000);
+        int subscribers = Integer.getInteger("bench.subscribers", 500);
+        int clients = 8;
+        User author = userService.createUser(new User("changes-bench"));
+
+        //warm up
+        run("warmup", posts / 5, clients, author);
+        report("none", run("none", posts, clients, author), posts);
+
+        AtomicLong delivered = new AtomicLong();
+        List<Runnable> cancels = new ArrayList<>();
+        for(int i = 0; i < subscribers; i++){
+            cancels.add(changeStream.subscribe(null, sink(delivered::incrementAndGet)));
+        }
+        report(subscribers + " reading", run("reading", posts, clients, author), posts);
+        System.out.printf("delivered %d events to %d subscribers%n", delivered.get(), changeStream.subscriberCount());
+        cancels.forEach(Runnable::run);
+
+        CountDownLatch release = new CountDownLatch(1);
+        for(int i = 0; i < subscribers; i++){
+            changeStream.subscribe(null, sink(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException ex){
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        report(subscribers + " stuck", run("stuck", posts, clients, author), posts);
+        System.out.printf("%d stuck subscribers left after the run%n", changeStream.subscriberCount());
+        release.countDown();
+    }
+
+    private long[] run(String name, int posts, int clients, User author) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        long[] nanos = new long[posts];
+        List<Future<?>> futures = new ArrayList<>();
+        for(int c = 0; c < clients; c++){
+            int client = c;
+            futures.add(pool.submit(() -> {
+                for(int i = client; i < posts; i += clients){
+                    long start = System.nanoTime();
+                    postService.createPost(post(name + " " + i + " " + System.nanoTime()), author.getId());
+                    nanos[i] = System.nanoTime() - start;
+                }
+            }));
+        }
+        for(Future<?> future : futures){
+            future.get();
+        }
+        pool.shutdown();
+        return nanos;
+    }
+
+    private static void report(String name, long[] nanos, int posts){
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-14s p50 %7.2f ms  p99 %7.2f ms  mean %7.2f ms%n", name,
+                sorted[posts / 2] / 1e6, sorted[posts * 99 / 100] / 1e6, Arrays.stream(sorted).average().orElse(0) / 1e6);
+    }
+
+    private static ChangeSink sink(Runnable onSend){
+        return new ChangeSink() {
+            @Override
+            public void send(ChangeEvent event){
+                onSend.run();
+            }
+
+            @Override
+            public void reset(){
+            }
+
+            @Override
+            public void heartbeat(){
+            }
+
+            @Override
+            public void close(){
+            }
+        };
+    }
+
+    private static Post post(String title){
+        Post post = new Post();
+        post.setTitle(title);
+        post.setBody("body of " + title);
+        return post;
+    }
+}
@@ -0,0 +1,275 @@
+package com.training.blog.changes;
+
+import com.training.blog.exceptions.ChangeStreamFullException;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.services.PostService;
+import com.training.blog.services.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//buffers of 8 and a replay log of 32, so a stuck subscriber and a client that was away too long are quick to get
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:changesdb",
+        "blog.changes.buffer-size=8",
+        "blog.changes.replay-size=32",
+        "blog.changes.max-subscribers=24"
+})
+@AutoConfigureMockMvc
+@DirtiesContext
+class ChangeStreamTest {
+
+    @Autowired
+    private ChangeStream changeStream;
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testStuckSubscribersAreLetGoWithoutHoldingUpWritesOrOtherSubscribers(){
+        User author = userService.createUser(new User("changes-author"));
+        int before = changeStream.subscriberCount();
+        RecordingSink fast = new RecordingSink();
+        Runnable cancelFast = changeStream.subscribe(null, fast);
+        List<BlockingSink> stuck = new ArrayList<>();
+        for(int i = 0; i < 20; i++){
+            BlockingSink sink = new BlockingSink();
+            changeStream.subscribe(null, sink);
+            stuck.add(sink);
+        }
+
+        //every write returns although 20 subscribers never take a single event
+        List<Long> created = new ArrayList<>();
+        for(int i = 0; i < 30; i++){
+            created.add(postService.createPost(post("change post " + i), author.getId()).getId());
+        }
+        awaitTrue(() -> fast.events.size() >= 30);
+        assertEquals(created, fast.events.stream().map(ChangeEvent::resourceId).toList());
+        assertTrue(fast.events.stream().allMatch(event -> event.name().equals("post.created")));
+        assertFalse(fast.reset);
+
+        //dropped as soon as their buffers overflowed, the sink is closed once the stuck write gives up
+        awaitTrue(() -> changeStream.subscriberCount() == before + 1);
+        stuck.forEach(sink -> sink.release.countDown());
+        stuck.forEach(sink -> awaitTrue(() -> sink.closed));
+        cancelFast.run();
+        awaitTrue(() -> fast.closed);
+    }
+
+    @Test
+    void testLastEventIdReplaysWhatWasMissedOrResetsWhenItIsGone(){
+        User author = userService.createUser(new User("replay-author"));
+        RecordingSink first = new RecordingSink();
+        Runnable cancelFirst = changeStream.subscribe(null, first);
+        Post post = postService.createPost(post("replayed post"), author.getId());
+        awaitTrue(() -> first.events.size() == 1);
+        cancelFirst.run();
+        String seen = first.events.get(0).id();
+
+        Post edit = post("replayed post edited");
+        edit.setId(post.getId());
+        postService.editPost(edit);
+        postService.deletePost(post.getId());
+
+        RecordingSink resumed = new RecordingSink();
+        Runnable cancelResumed = changeStream.subscribe(seen, resumed);
+        awaitTrue(() -> resumed.events.size() == 2);
+        assertFalse(resumed.reset);
+        assertEquals(List.of("post.updated", "post.deleted"), resumed.events.stream().map(ChangeEvent::name).toList());
+        assertEquals(post.getId(), resumed.events.get(1).resourceId());
+        cancelResumed.run();
+
+        //an id from before a restart, and one that has dropped out of the 32 kept
+        RecordingSink restarted = new RecordingSink();
+        Runnable cancelRestarted = changeStream.subscribe("0-1", restarted);
+        awaitTrue(() -> restarted.reset);
+        cancelRestarted.run();
+        for(int i = 0; i < 40; i++){
+            postService.createPost(post("pushing out " + i), author.getId());
+        }
+        RecordingSink late = new RecordingSink();
+        Runnable cancelLate = changeStream.subscribe(seen, late);
+        awaitTrue(() -> late.reset);
+        cancelLate.run();
+    }
+
+    @Test
+    void testEventsArePublishedOnCommitOnly(){
+        RecordingSink sink = new RecordingSink();
+        Runnable cancel = changeStream.subscribe(null, sink);
+        transactionTemplate.executeWithoutResult(status -> {
+            changeStream.publish("post", ChangeType.DELETED, -1L, null);
+            status.setRollbackOnly();
+        });
+        transactionTemplate.executeWithoutResult(status ->
+                changeStream.publish("post", ChangeType.DELETED, -2L, null));
+        awaitTrue(() -> !sink.events.isEmpty());
+        assertEquals(List.of(-2L), sink.events.stream().map(ChangeEvent::resourceId).toList());
+        cancel.run();
+    }
+
+    @Test
+    void testEndpointStreamsEventsAndTurnsAwayClientsOverTheLimit() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/changes").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        changeStream.publish("user", ChangeType.CREATED, 7L, 0L);
+        awaitTrue(() -> contentOf(result).contains("\"resourceId\":7"));
+        assertTrue(contentOf(result).contains("event:user.created"));
+
+        List<Runnable> cancels = new ArrayList<>();
+        while (changeStream.subscriberCount() < 24){
+            cancels.add(changeStream.subscribe(null, new RecordingSink()));
+        }
+        mockMvc.perform(get("/api/changes").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists("Retry-After"));
+        cancels.forEach(Runnable::run);
+    }
+
+    @Test
+    void testConcurrentSubscribersDontGetPastTheLimit() throws Exception {
+        int before = changeStream.subscriberCount();
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Runnable>> futures = new ArrayList<>();
+        for(int i = 0; i < 64; i++){
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    return changeStream.subscribe(null, new RecordingSink());
+                } catch (ChangeStreamFullException ex){
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+        List<Runnable> cancels = new ArrayList<>();
+        for(Future<Runnable> future : futures){
+            Runnable cancel = future.get();
+            if(cancel != null){
+                cancels.add(cancel);
+            }
+        }
+        pool.shutdown();
+        assertEquals(24 - before, cancels.size());
+        assertEquals(24, changeStream.subscriberCount());
+
+        //every slot comes back, also when a subscriber is cancelled twice
+        cancels.forEach(Runnable::run);
+        cancels.forEach(Runnable::run);
+        assertEquals(before, changeStream.subscriberCount());
+        Runnable again = changeStream.subscribe(null, new RecordingSink());
+        again.run();
+    }
+
+    private static String contentOf(MvcResult result){
+        try {
+            return result.getResponse().getContentAsString();
+        } catch (Exception ex){
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition){
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()){
+            assertTrue(System.currentTimeMillis() < deadline, "timed out waiting for the change stream");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException ex){
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    private static Post post(String title){
+        Post post = new Post();
+        post.setTitle(title);
+        post.setBody("body of " + title);
+        return post;
+    }
+
+    private static class RecordingSink implements ChangeSink {
+
+        final List<ChangeEvent> events = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean reset;
+        volatile boolean closed;
+
+        @Override
+        public void send(ChangeEvent event){
+            events.add(event);
+        }
+
+        @Override
+        public void reset(){
+            reset = true;
+        }
+
+        @Override
+        public void heartbeat(){
+        }
+
+        @Override
+        public void close(){
+            closed = true;
+        }
+    }
+
+    //a client that stopped reading, its first write doesn't return until released
+    private static class BlockingSink implements ChangeSink {
+
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean closed;
+
+        @Override
+        public void send(ChangeEvent event){
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException ex){
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void reset(){
+        }
+
+        @Override
+        public void heartbeat(){
+        }
+
+        @Override
+        public void close(){
+            closed = true;
+        }
+    }
+}
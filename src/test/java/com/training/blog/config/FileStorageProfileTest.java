@@ -0,0 +1,56 @@
+package com.training.blog.config;
+
+import com.training.blog.BlogApplication;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.repository.PostRepository;
+import com.training.blog.services.PostService;
+import com.training.blog.services.UserService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//the file profile keeps data across restarts and builds its schema from the migrations
+class FileStorageProfileTest {
+
+    @TempDir
+    Path storage;
+
+    @Test
+    void testDataSurvivesARestart(){
+        Long userId;
+        Long postId;
+        try (ConfigurableApplicationContext context = start()){
+            User user = context.getBean(UserService.class).createUser(new User("durable"));
+            Post post = new Post();
+            post.setTitle("durable title");
+            post.setBody("durable body");
+            postId = context.getBean(PostService.class).createPost(post, user.getId()).getId();
+            userId = user.getId();
+        }
+
+        try (ConfigurableApplicationContext context = start()){
+            assertEquals("durable", context.getBean(UserService.class).getUser(userId).getUsername());
+            assertEquals("durable title", context.getBean(PostRepository.class).findById(postId).orElseThrow().getTitle());
+            JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+            assertEquals(1, jdbc.queryForObject("select count(*) from \"flyway_schema_history\" " +
+                    "where \"version\" = '1' and \"success\"", Integer.class));
+            assertEquals(1, jdbc.queryForObject("select count(*) from information_schema.indexes " +
+                    "where index_name = 'idx_post_author_id'", Integer.class));
+        }
+    }
+
+    private ConfigurableApplicationContext start(){
+        return new SpringApplicationBuilder(BlogApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("file")
+                .run("--blog.storage.path=" + storage.resolve("blogdb").toAbsolutePath());
+    }
+}
@@ -0,0 +1,147 @@
+package com.training.blog.config;
+
+import com.training.blog.BlogApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+//starts the application once per thread mode and drives the same read mix against both
+//run with: mvn test -Pbenchmark -Dtest=ThreadModeLoadBenchmarkTest [-Dbench.clients=1000] [-Dbench.seconds=20]
+@Tag("benchmark")
+class ThreadModeLoadBenchmarkTest {
+    private static final int USERS = 100;
+    private static final int POSTS_PER_USER = 20;
+
+    @Test
+    void comparePlatformAndVirtualThreads() throws Exception {
+        int clients = Integer.getInteger("bench.clients", 1000);
+        int seconds = Integer.getInteger("bench.seconds", 20);
+        for(boolean virtual : new boolean[]{false, true}){
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(BlogApplication.class)
+                    .properties(
+                            "server.port=0",
+                            "spring.datasource.url=jdbc:h2:mem:threadbench" + virtual,
+                            "blog.threads.virtual.enabled=" + virtual,
+                            "blog.ratelimit.enabled=false",
+                            "logging.level.root=WARN")
+                    .run()) {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                String base = "http://localhost:" + port;
+                seed(base);
+                Result result = drive(base, clients, Duration.ofSeconds(seconds));
+                System.out.printf("mode=%s clients=%d requests=%d throughput=%.0f/s p50=%.1fms p99=%.1fms errors=%d%n",
+                        virtual ? "virtual" : "platform", clients, result.latencies.length,
+                        result.latencies.length / (double) seconds,
+                        percentile(result.latencies, 0.50), percentile(result.latencies, 0.99), result.errors);
+            }
+        }
+    }
+
+    private void seed(String base) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        for(int user = 1; user <= USERS; user++){
+            HttpResponse<String> created = client.send(json(base + "/api/users",
+                    "{\"username\":\"bench-user-" + user + "\"}"), HttpResponse.BodyHandlers.ofString());
+            String id = created.body().replaceAll(".*\"id\":(\\d+).*", "$1");
+            StringBuilder posts = new StringBuilder("[");
+            for(int post = 0; post < POSTS_PER_USER; post++){
+                posts.append(post == 0 ? "" : ",")
+                        .append("{\"title\":\"bench ").append(user).append('-').append(post)
+                        .append("\",\"body\":\"body\"}");
+            }
+            client.send(json(base + "/api/posts/" + id + "/batch", posts.append(']').toString()),
+                    HttpResponse.BodyHandlers.discarding());
+        }
+    }
+
+    private Result drive(String base, int clients, Duration duration) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<long[]>> workers = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for(int i = 0; i < clients; i++){
+                workers.add(executor.submit(() -> {
+                    long[] latencies = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < deadline){
+                        String path = ThreadLocalRandom.current().nextBoolean()
+                                ? "/api/users?limit=20"
+                                : "/api/users/" + usersPage(client, base) + "/posts?limit=20";
+                        long start = System.nanoTime();
+                        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(base + path)).build(),
+                                HttpResponse.BodyHandlers.discarding());
+                        long latency = response.statusCode() == 200 ? System.nanoTime() - start : -1;
+                        if(count == latencies.length){
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = latency;
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+        }
+        long[] all = workers.stream().map(this::join).flatMapToLong(Arrays::stream).toArray();
+        long[] ok = Arrays.stream(all).filter(latency -> latency >= 0).sorted().toArray();
+        return new Result(ok, all.length - ok.length);
+    }
+
+    //user ids come from a pooled sequence, so pick a random user from the first page instead of guessing
+    private volatile List<String> userIds;
+
+    private String usersPage(HttpClient client, String base) throws Exception {
+        if(userIds == null){
+            String body = client.send(HttpRequest.newBuilder(URI.create(base + "/api/users?limit=100")).build(),
+                    HttpResponse.BodyHandlers.ofString()).body();
+            List<String> ids = new ArrayList<>();
+            for(String part : body.split("\"id\":")){
+                if(Character.isDigit(part.charAt(0))){
+                    ids.add(part.replaceAll("^(\\d+).*", "$1"));
+                }
+            }
+            userIds = ids;
+        }
+        return userIds.get(ThreadLocalRandom.current().nextInt(userIds.size()));
+    }
+
+    private long[] join(Future<long[]> future){
+        try {
+            return future.get();
+        } catch (Exception ex){
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private HttpRequest json(String uri, String body){
+        return HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private double percentile(long[] sorted, double percentile){
+        if(sorted.length == 0){
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)] / 1e6;
+    }
+
+    private record Result(long[] latencies, long errors) {
+    }
+}
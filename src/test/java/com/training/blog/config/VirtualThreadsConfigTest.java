@@ -0,0 +1,56 @@
+package com.training.blog.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:virtualdb",
+        "blog.threads.virtual.enabled=true"
+})
+@DirtiesContext
+class VirtualThreadsConfigTest {
+
+    @Autowired
+    private ServletWebServerApplicationContext context;
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private AsyncTaskExecutor applicationTaskExecutor;
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void testTomcatHandsRequestsToVirtualThreads() throws Exception {
+        Executor executor = ((TomcatWebServer) context.getWebServer()).getTomcat()
+                .getConnector().getProtocolHandler().getExecutor();
+        Future<Boolean> virtual = ((ExecutorService) executor)
+                .submit(() -> Thread.currentThread().isVirtual());
+        assertTrue(virtual.get());
+
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/users")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+    }
+
+    @Test
+    void testAsyncWorkRunsOnVirtualThreads() throws Exception {
+        assertTrue(applicationTaskExecutor.submit(() -> Thread.currentThread().isVirtual()).get());
+    }
+}
@@ -0,0 +1,77 @@
+package com.training.blog.controllers;
+
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.services.PostService;
+import com.training.blog.services.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:conditionaldb")
+@AutoConfigureMockMvc
+@DirtiesContext
+class ConditionalRequestsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void testPostEtagChangesOnlyWhenThePostIsEdited() throws Exception {
+        User author = userService.createUser(new User("conditional-author"));
+        Post post = postService.createPost(post("conditional title", "first body"), author.getId());
+        String path = "/api/posts/" + post.getId();
+
+        String etag = mockMvc.perform(get(path))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("Last-Modified"))
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get(path).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        Post edit = post("conditional title", "second body");
+        edit.setId(post.getId());
+        postService.editPost(edit);
+
+        String newEtag = mockMvc.perform(get(path).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(etag, newEtag);
+    }
+
+    @Test
+    void testCollectionEtagChangesWhenAPostIsCreated() throws Exception {
+        User author = userService.createUser(new User("collection-author"));
+        String etag = mockMvc.perform(get("/api/posts"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/api/posts").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        postService.createPost(post("collection title", "body"), author.getId());
+
+        mockMvc.perform(get("/api/posts").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/users/" + author.getId() + "/posts").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    private Post post(String title, String body){
+        Post post = new Post();
+        post.setTitle(title);
+        post.setBody(body);
+        return post;
+    }
+}
@@ -1,12 +1,32 @@
 package com.training.blog.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.training.blog.batch.BatchItemResult;
+import com.training.blog.batch.BatchResult;
+import com.training.blog.cache.ResourceVersions;
+import com.training.blog.cache.ResponseCache;
+import com.training.blog.exceptions.IngestionQueueFullException;
+import com.training.blog.exceptions.InvalidCursorException;
 import com.training.blog.exceptions.PostNotFoundException;
 import com.training.blog.exceptions.UserNotFoundException;
+import com.training.blog.exceptions.VersionConflictException;
+import com.training.blog.feed.FeedEntry;
 import com.training.blog.models.Post;
 import com.training.blog.models.User;
+import com.training.blog.multiget.MultiGetResponse;
+import com.training.blog.patch.PostPatch;
+import com.training.blog.pagination.PageQuery;
+import com.training.blog.pagination.PageResponse;
+import com.training.blog.repository.EntityVersion;
 import com.training.blog.repository.PostRepository;
+import com.training.blog.repository.PostSummary;
 import com.training.blog.repository.UserRepository;
+import com.training.blog.imports.ImportSummary;
+import com.training.blog.ingest.PostIngestion;
+import com.training.blog.services.ExportService;
+import com.training.blog.services.ImportService;
+import com.training.blog.services.PostBatchService;
+import com.training.blog.services.PostIngestService;
 import com.training.blog.services.PostService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -14,18 +34,25 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -34,6 +61,7 @@ import static org.junit.jupiter.api.Assertions.*;
 //then try removing the unneeded mockbeans
 
 @WebMvcTest(PostController.class)
+@Import(ResponseCache.class)
 @EnableWebMvc
 class PostControllerTest {
     private static final String END_POINT_PATH = "/api/posts";
@@ -47,12 +75,27 @@ class PostControllerTest {
     @MockBean
     private PostService postService;
 
+    @MockBean
+    private PostBatchService postBatchService;
+
+    @MockBean
+    private ExportService exportService;
+
+    @MockBean
+    private ImportService importService;
+
     @MockBean
     private UserRepository userRepository;
 
+    @MockBean
+    private ResourceVersions resourceVersions;
+    @MockBean
+    private PostIngestService postIngestService;
+
     @Test
     void testGetPostThatDoesExistShouldReturn200Ok() throws Exception{
         String requestBody = objectMapper.writeValueAsString(Mockito.mock(Post.class));
+        Mockito.when(postService.getPostVersion(Mockito.anyLong())).thenReturn(new EntityVersion(3L, null));
         Mockito.when(postService.getPost(Mockito.anyLong())).thenReturn(Mockito.mock(Post.class));
         mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/" + Mockito.anyLong()))
                 .andExpect(status().isOk())
@@ -60,9 +103,94 @@ class PostControllerTest {
                 .andDo(print());
     }
 
+    @Test
+    void testGetPostWithMatchingEtagShouldReturn304WithoutLoadingThePost() throws Exception{
+        Instant lastModified = Instant.parse("2024-01-02T03:04:05Z");
+        Mockito.when(postService.getPostVersion(1L)).thenReturn(new EntityVersion(3L, lastModified));
+        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/1")
+                        .header("If-None-Match", "\"post-1-3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"post-1-3\""))
+                .andExpect(content().string(""));
+        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/1")
+                        .header("If-Modified-Since", "Tue, 02 Jan 2024 03:04:05 GMT"))
+                .andExpect(status().isNotModified());
+        Mockito.verify(postService, Mockito.never()).getPost(Mockito.anyLong());
+    }
+
+    @Test
+    void testGetPostWithStaleEtagShouldReturnTheNewVersion() throws Exception{
+        Post post = new Post();
+        post.setId(1L);
+        post.setVersion(4L);
+        Mockito.when(postService.getPostVersion(1L)).thenReturn(new EntityVersion(4L, null));
+        Mockito.when(postService.getPost(1L)).thenReturn(post);
+        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/1")
+                        .header("If-None-Match", "\"post-1-3\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"post-1-4\""));
+    }
+
+    @Test
+    void testGetPostLoadedBehindAnEditShouldBeTaggedWithTheVersionItRead() throws Exception{
+        Post post = new Post();
+        post.setId(2L);
+        post.setVersion(3L);
+        post.setTitle("before the edit");
+        //the version column already says 4, the load still came back with version 3
+        Mockito.when(postService.getPostVersion(2L)).thenReturn(new EntityVersion(4L, null));
+        Mockito.when(postService.getPost(2L)).thenReturn(post);
+        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/2"))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues("ETag", "\"post-2-3\""))
+                .andExpect(jsonPath("$.title").value("before the edit"));
+
+        post.setVersion(4L);
+        post.setTitle("after the edit");
+        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/2"))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues("ETag", "\"post-2-4\""))
+                .andExpect(jsonPath("$.title").value("after the edit"));
+    }
+
+    @Test
+    void testGetPostShouldServeCachedBytesUntilTheVersionChanges() throws Exception{
+        Post post = new Post();
+        post.setId(7L);
+        post.setVersion(1L);
+        post.setTitle("cached title");
+        post.setBody("cached body ".repeat(20));
+        Mockito.when(postService.getPostVersion(7L)).thenReturn(new EntityVersion(1L, null));
+        Mockito.when(postService.getPost(7L)).thenReturn(post);
+        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/7"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.title").value("cached title"));
+        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/7").header("Accept-Encoding", "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("Vary", "Accept-Encoding"));
+        Mockito.verify(postService, Mockito.times(1)).getPost(7L);
+
+        post.setVersion(2L);
+        Mockito.when(postService.getPostVersion(7L)).thenReturn(new EntityVersion(2L, null));
+        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/7"))
+                .andExpect(status().isOk());
+        Mockito.verify(postService, Mockito.times(2)).getPost(7L);
+    }
+
+    @Test
+    void testListPostsWithCurrentCollectionEtagShouldReturn304WithoutQuerying() throws Exception{
+        Mockito.when(resourceVersions.postsTag()).thenReturn("\"posts-x-7\"");
+        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH)
+                        .header("If-None-Match", "\"posts-x-7\""))
+                .andExpect(status().isNotModified());
+        Mockito.verify(postService, Mockito.never()).getPosts(Mockito.any());
+    }
+
     @Test
     void testGetPostThatDoesNotExistShouldReturn400BadRequest() throws Exception{
-        Mockito.when(postService.getPost(Mockito.anyLong())).thenThrow(PostNotFoundException.class);
+        Mockito.when(postService.getPostVersion(Mockito.anyLong())).thenThrow(PostNotFoundException.class);
         mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/" + Mockito.anyLong()))
                 .andExpect(status().isBadRequest())
                 .andExpect(result -> Assertions.assertTrue(result.getResolvedException() instanceof PostNotFoundException))
@@ -73,14 +201,115 @@ class PostControllerTest {
     void testListAllPosts() throws Exception{
         List<Post> posts = new ArrayList<>();
         posts.add(Mockito.mock(Post.class));
-        String requestBody = objectMapper.writeValueAsString(posts);
-        Mockito.when(postRepository.findAll()).thenReturn(posts);
+        PageResponse<Post> page = new PageResponse<>(posts, "bmV4dA");
+        String requestBody = objectMapper.writeValueAsString(page);
+        Mockito.when(postService.getPosts(Mockito.any(PageQuery.class))).thenReturn(page);
         mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH))
                 .andExpect(status().isOk())
                 .andExpect(content().json(requestBody))
                 .andDo(print());
     }
 
+    @Test
+    void testGetPostsByIdsShouldBindTheIdListAndReportMissingIds() throws Exception{
+        Post post = new Post();
+        post.setId(2L);
+        post.setTitle("title");
+        Mockito.when(postService.getPostsByIds(List.of(2L, 9L))).thenReturn(new MultiGetResponse<>(List.of(post), List.of(9L)));
+        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH).param("ids", "2,9"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(2))
+                .andExpect(jsonPath("$.missing[0]").value(9));
+        Mockito.verify(postService, Mockito.never()).getPosts(Mockito.any(PageQuery.class));
+    }
+
+    @Test
+    void testListPostSummariesShouldNotCallTheEntityList() throws Exception{
+        PageResponse<PostSummary> page = new PageResponse<>(List.of(new PostSummary(1L, "title", 2L, "excerpt")), null);
+        Mockito.when(postService.getPostSummaries(Mockito.any(PageQuery.class))).thenReturn(page);
+        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH).param("view", "summary"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"items\":[{\"id\":1,\"title\":\"title\",\"authorId\":2,\"excerpt\":\"excerpt\"}]}"));
+        Mockito.verify(postService, Mockito.never()).getPosts(Mockito.any());
+    }
+
+    @Test
+    void testFeedShouldReturnEntriesWithTheirCreationTime() throws Exception{
+        FeedEntry entry = new FeedEntry(3L, "title", 2L, "excerpt", Instant.parse("2026-01-02T03:04:05.000006Z"), 1L);
+        Mockito.when(postService.getFeed(Mockito.argThat(query -> query.getLimit() == 1)))
+                .thenReturn(new PageResponse<>(List.of(entry), "next-cursor"));
+        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/feed?limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(3))
+                .andExpect(jsonPath("$.items[0].createdAt").exists())
+                .andExpect(jsonPath("$.items[0].version").doesNotExist())
+                .andExpect(jsonPath("$.next").value("next-cursor"));
+    }
+
+    @Test
+    void testListPostsWithPageFallsBackToOffsetPaging() throws Exception{
+        PageResponse<Post> page = PageResponse.ofPage(new ArrayList<>(), null);
+        Mockito.when(postService.getPosts(Mockito.argThat(query ->
+                query.isOffset() && query.getPage() == 2 && query.getLimit() == 10))).thenReturn(page);
+        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "?page=2&limit=10"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(page)))
+                .andDo(print());
+    }
+
+    @Test
+    void testListPostsWithInvalidCursorShouldReturn400BadRequest() throws Exception{
+        Mockito.when(postService.getPosts(Mockito.argThat(query -> "garbage".equals(query.getCursor()))))
+                .thenThrow(new InvalidCursorException("garbage"));
+        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "?cursor=garbage"))
+                .andExpect(status().isBadRequest())
+                .andExpect(result -> Assertions.assertTrue(result.getResolvedException() instanceof InvalidCursorException))
+                .andDo(print());
+    }
+
+    @Test
+    void testImportPostsShouldReturnSummary() throws Exception{
+        ImportSummary summary = new ImportSummary();
+        summary.setLines(1);
+        summary.recordImported(1);
+        Mockito.when(importService.importPosts(Mockito.any())).thenReturn(summary);
+        mockMvc.perform(MockMvcRequestBuilders.post(END_POINT_PATH + "/import")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content("{}\n"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(summary)))
+                .andDo(print());
+    }
+
+    @Test
+    void testExportPostsShouldStreamNdjson() throws Exception{
+        Mockito.when(exportService.exportPosts(Mockito.any())).thenAnswer(invocation -> {
+            invocation.getArgument(0, java.io.OutputStream.class).write("{\"id\":1}\n{\"id\":2}\n".getBytes());
+            return 2L;
+        });
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string("{\"id\":1}\n{\"id\":2}\n"))
+                .andDo(print());
+    }
+
+    @Test
+    void testSearchPostsShouldReturnRankedPosts() throws Exception{
+        Post post = new Post();
+        post.setTitle("testTitle");
+        post.setBody("testBody");
+        List<Post> posts = List.of(post);
+        Mockito.when(postService.searchPosts("test", null)).thenReturn(posts);
+        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/search?q=test"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(posts)))
+                .andDo(print());
+    }
+
     @Test
     void testCreatePostWhenUserExistAndPostIsValidShouldReturn201Created() throws Exception{
         //not mocked because of @Valid annotation, not empty title and body required
@@ -139,6 +368,23 @@ class PostControllerTest {
                 .andDo(print());
     }
 
+    @Test
+    void testCreatePostsInBatchShouldReturnPerItemResults() throws Exception{
+        Post post = new Post();
+        post.setTitle("testTitle");
+        post.setBody("testBody");
+        BatchResult result = new BatchResult(List.of(
+                BatchItemResult.created(0, 1L),
+                BatchItemResult.failed(1, BatchItemResult.Status.DUPLICATE, List.of("duplicate"))));
+        Mockito.when(postBatchService.createPosts(Mockito.anyList(), Mockito.eq(1L))).thenReturn(result);
+        mockMvc.perform(MockMvcRequestBuilders.post(END_POINT_PATH + "/1/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(post, post))))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(result)))
+                .andDo(print());
+    }
+
     @Test
     void testUpdatePostWhenPostExistShouldReturn200Ok() throws Exception{
         Post updatedPost = new Post();
@@ -184,10 +430,76 @@ class PostControllerTest {
                 .andDo(print());
     }
 
+    @Test
+    void testPatchPostWithIfMatchShouldPassTheVersionAndReturnTheNewEtag() throws Exception {
+        Post patched = new Post();
+        patched.setId(1L);
+        patched.setTitle("patched");
+        patched.setBody("body");
+        patched.setVersion(4L);
+        Mockito.when(postService.patchPost(Mockito.eq(1L), Mockito.any(PostPatch.class), Mockito.eq(3L))).thenReturn(patched);
+        mockMvc.perform(MockMvcRequestBuilders.patch(END_POINT_PATH + "/1")
+                        .header("If-Match", "\"post-1-3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"patched\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"post-1-4\""));
+    }
+
+    @Test
+    void testPatchPostOnAStaleVersionShouldReturn409Conflict() throws Exception {
+        Mockito.when(postService.patchPost(Mockito.eq(1L), Mockito.any(PostPatch.class), Mockito.eq(2L)))
+                .thenThrow(new VersionConflictException("Post", 1L, 2L));
+        mockMvc.perform(MockMvcRequestBuilders.patch(END_POINT_PATH + "/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"body\":\"new body\",\"version\":2}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void testPatchPostWithoutAVersionShouldReturn428() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.patch(END_POINT_PATH + "/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"body\":\"new body\"}"))
+                .andExpect(status().isPreconditionRequired());
+        Mockito.verifyNoInteractions(postService);
+    }
+
     @Test
     void testDeletePostShouldReturn204NoContent() throws Exception {
         mockMvc.perform(MockMvcRequestBuilders.delete(END_POINT_PATH + "/1"))
                 .andExpect(status().isNoContent())
                 .andDo(print());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCreatePostAsyncShouldReturn202WithTrackingLocation() throws Exception{
+        Post post = new Post();
+        post.setTitle("queued title");
+        post.setBody("queued body");
+        Mockito.when(postIngestService.submit(Mockito.any(Post.class), Mockito.eq(1L)))
+                .thenReturn(new PostIngestion("ingest-1", 1L, "queued title"));
+        mockMvc.perform(MockMvcRequestBuilders.post(END_POINT_PATH + "/1").param("async", "true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(post)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/posts/ingestions/ingest-1"))
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+        Mockito.verify(postService, Mockito.never()).createPost(Mockito.any(), Mockito.anyLong());
+    }
+
+    @Test
+    void testCreatePostAsyncWithFullQueueShouldReturn503WithRetryAfter() throws Exception{
+        Post post = new Post();
+        post.setTitle("rejected title");
+        post.setBody("rejected body");
+        Mockito.when(postIngestService.submit(Mockito.any(Post.class), Mockito.eq(1L)))
+                .thenThrow(new IngestionQueueFullException(10));
+        mockMvc.perform(MockMvcRequestBuilders.post(END_POINT_PATH + "/1").param("async", "true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(post)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.message").value("INGESTION_QUEUE_FULL"));
+    }
+}
@@ -1,21 +1,35 @@
 package com.training.blog.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.training.blog.cache.ResourceVersions;
+import com.training.blog.cache.ResponseCache;
+import com.training.blog.deletion.UserDeletion;
 import com.training.blog.exceptions.NotUniqueException;
 import com.training.blog.exceptions.UserNotFoundException;
 import com.training.blog.models.Post;
 import com.training.blog.models.User;
+import com.training.blog.multiget.MultiGetResponse;
+import com.training.blog.pagination.PageQuery;
+import com.training.blog.pagination.PageResponse;
+import com.training.blog.repository.EntityVersion;
 import com.training.blog.repository.PostRepository;
 import com.training.blog.repository.UserRepository;
+import com.training.blog.imports.ImportSummary;
+import com.training.blog.services.ExportService;
+import com.training.blog.services.ImportService;
+import com.training.blog.services.UserDeletionService;
 import com.training.blog.services.UserService;
+import com.training.blog.stats.AuthorStats;
 import  org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
@@ -23,8 +37,12 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 //Consider defining a bean of type 'com.training.blog.repository.UserRepository' in your configuration.
@@ -32,6 +50,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 //then try removing the unneeded mockbeans
 
 @WebMvcTest(UserController.class)
+@Import(ResponseCache.class)
 @EnableWebMvc
 class UserControllerTest {
     private static final String END_POINT_PATH = "/api/users";
@@ -46,6 +65,14 @@ class UserControllerTest {
     private PostRepository postRepository;
     @MockBean
     private UserService userService;
+    @MockBean
+    private ExportService exportService;
+    @MockBean
+    private ImportService importService;
+    @MockBean
+    private ResourceVersions resourceVersions;
+    @MockBean
+    private UserDeletionService userDeletionService;
 
     @Test
     void testGetUsersShouldReturn200Ok() throws Exception {
@@ -55,10 +82,72 @@ class UserControllerTest {
                 .andDo(print());
     }
 
+    @Test
+    void testGetUsersWithCountShouldBindPageQuery() throws Exception {
+        PageResponse<User> page = new PageResponse<>(new ArrayList<>(), null);
+        page.setTotal(0L);
+        Mockito.when(userService.getUsers(Mockito.argThat(query -> query.isCount() && query.getLimit() == 5)))
+                .thenReturn(page);
+        mockMvc.perform(MockMvcRequestBuilders
+                .get(END_POINT_PATH + "?limit=5&count=true"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(page)))
+                .andDo(print());
+    }
+
+    @Test
+    void testGetUsersByIdsShouldKeepTheRequestedOrder() throws Exception {
+        User second = new User("second");
+        second.setId(2L);
+        User first = new User("first");
+        first.setId(1L);
+        Mockito.when(userService.getUsersByIds(List.of(2L, 1L)))
+                .thenReturn(new MultiGetResponse<>(List.of(second, first), List.of()));
+        mockMvc.perform(MockMvcRequestBuilders
+                .get(END_POINT_PATH + "?ids=2,1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].username").value("second"))
+                .andExpect(jsonPath("$.items[1].username").value("first"))
+                .andExpect(jsonPath("$.missing").isEmpty());
+    }
+
+    @Test
+    void testImportUsersShouldReturnSummary() throws Exception{
+        ImportSummary summary = new ImportSummary();
+        summary.setLines(1);
+        summary.recordImported(1);
+        Mockito.when(importService.importUsers(Mockito.any())).thenReturn(summary);
+        mockMvc.perform(MockMvcRequestBuilders.post(END_POINT_PATH + "/import")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content("{}\n"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(summary)))
+                .andDo(print());
+    }
+
+    @Test
+    void testExportUsersShouldStreamNdjson() throws Exception{
+        Mockito.when(exportService.exportUsers(Mockito.any())).thenAnswer(invocation -> {
+            invocation.getArgument(0, java.io.OutputStream.class).write("{\"id\":1}\n{\"id\":2}\n".getBytes());
+            return 2L;
+        });
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string("{\"id\":1}\n{\"id\":2}\n"))
+                .andDo(print());
+    }
+
     @Test
     void testGetUserThatDoesExistShouldReturn200Ok() throws Exception {
-        String requestBody = objectMapper.writeValueAsString(Mockito.mock(User.class));
-        Mockito.when(userService.getUser(Mockito.anyLong())).thenReturn(Mockito.mock(User.class));
+        User user = Mockito.mock(User.class);
+        Mockito.when(user.getVersion()).thenReturn(0L);
+        String requestBody = objectMapper.writeValueAsString(user);
+        Mockito.when(userService.getUserVersion(Mockito.anyLong())).thenReturn(new EntityVersion(0L, null));
+        Mockito.when(userService.getUser(Mockito.anyLong())).thenReturn(user);
         mockMvc.perform(MockMvcRequestBuilders
                 .get(END_POINT_PATH + "/" + Mockito.anyLong()))
                 .andExpect(status().isOk())
@@ -66,9 +155,18 @@ class UserControllerTest {
                 .andDo(print());
     }
 
+    @Test
+    void testGetUserWithMatchingEtagShouldReturn304() throws Exception {
+        Mockito.when(userService.getUserVersion(1L)).thenReturn(new EntityVersion(2L, null));
+        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/1")
+                        .header("If-None-Match", "\"user-1-2\""))
+                .andExpect(status().isNotModified());
+        Mockito.verify(userService, Mockito.never()).getUser(Mockito.anyLong());
+    }
+
     @Test
     void testGetUserThatDoesNotExistShouldReturn400BadRequest() throws Exception {
-        Mockito.when(userService.getUser(Mockito.anyLong())).thenThrow(UserNotFoundException.class);
+        Mockito.when(userService.getUserVersion(Mockito.anyLong())).thenThrow(UserNotFoundException.class);
         mockMvc.perform(MockMvcRequestBuilders
                         .get(END_POINT_PATH + "/" + Mockito.anyLong()))
                 .andExpect(status().isBadRequest())
@@ -80,9 +178,10 @@ class UserControllerTest {
     void testGetPostsOfUserThatExist() throws Exception {
         List<Post> posts = new ArrayList<>();
         posts.add(Mockito.mock(Post.class));
-        String expectedBody = objectMapper.writeValueAsString(posts);
-        Mockito.when(userService.getUserPosts(Mockito.anyLong())).thenReturn(posts);
-        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/" + Mockito.anyLong() + "/posts"))
+        PageResponse<Post> page = new PageResponse<>(posts, null);
+        String expectedBody = objectMapper.writeValueAsString(page);
+        Mockito.when(userService.getUserPosts(Mockito.anyLong(), Mockito.any(PageQuery.class))).thenReturn(page);
+        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/1/posts"))
                 .andExpect(status().isOk())
                 .andExpect(content().json(expectedBody))
                 .andDo(print());
@@ -90,8 +189,8 @@ class UserControllerTest {
 
     @Test
     void testGetPostsOfUserThatDoesNotExist() throws Exception {
-        Mockito.when(userService.getUserPosts(Mockito.any())).thenThrow(UserNotFoundException.class);
-        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/" + Mockito.anyLong() + "/posts"))
+        Mockito.when(userService.getUserPosts(Mockito.any(), Mockito.any())).thenThrow(UserNotFoundException.class);
+        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/1/posts"))
                 .andExpect(status().isBadRequest())
                 .andExpect(result -> Assertions.assertTrue(result.getResolvedException() instanceof UserNotFoundException))
                 .andDo(print());
@@ -140,7 +239,7 @@ class UserControllerTest {
 
     @Test
     void testUpdateUserIfUserExistsShouldReturn200Ok() throws Exception{
-        User user = Mockito.mock(User.class);
+        User user = new User("updated");
         String requestBody = objectMapper.writeValueAsString(user);
         Mockito.when(userService.updateUser(Mockito.any(User.class), Mockito.anyLong())).thenReturn(user);
         mockMvc.perform(MockMvcRequestBuilders.put(END_POINT_PATH + "/0")
@@ -153,7 +252,7 @@ class UserControllerTest {
 
     @Test
     void testUpdateUserIfUserDoesNotExistShouldReturn400BadRequest() throws Exception{
-        User user = Mockito.mock(User.class);
+        User user = new User("updated");
         String requestBody = objectMapper.writeValueAsString(user);
         Mockito.when(userService.updateUser(Mockito.any(User.class), Mockito.anyLong()))
                 .thenThrow(UserNotFoundException.class);
@@ -165,6 +264,17 @@ class UserControllerTest {
                 .andDo(print());
     }
 
+    @Test
+    void testUpdateUserWithoutUsernameShouldReturn400BadRequest() throws Exception{
+        mockMvc.perform(MockMvcRequestBuilders.put(END_POINT_PATH + "/0")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(result -> Assertions.assertTrue(result.getResolvedException() instanceof MethodArgumentNotValidException))
+                .andDo(print());
+        Mockito.verify(userService, Mockito.never()).updateUser(Mockito.any(), Mockito.anyLong());
+    }
+
     @Test
     void testDeleteUser() throws Exception {
         mockMvc.perform(MockMvcRequestBuilders
@@ -172,4 +282,25 @@ class UserControllerTest {
                 .andExpect(status().isNoContent())
                 .andDo(print());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testDeleteUserAsyncShouldReturn202WithProgressLocation() throws Exception {
+        Mockito.when(userDeletionService.start(1L)).thenReturn(new UserDeletion("job-1", 1L, 5000));
+        mockMvc.perform(MockMvcRequestBuilders.delete(END_POINT_PATH + "/1").param("async", "true"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/users/deletions/job-1"))
+                .andExpect(jsonPath("$.status").value("RUNNING"))
+                .andExpect(jsonPath("$.postsTotal").value(5000));
+        Mockito.verify(userService, Mockito.never()).deleteUser(Mockito.anyLong());
+    }
+
+    @Test
+    void testGetUserStatsShouldReturnCounters() throws Exception {
+        Mockito.when(userService.getUserStats(1L)).thenReturn(new AuthorStats(1L, 42, 99L));
+        mockMvc.perform(MockMvcRequestBuilders.get(END_POINT_PATH + "/1/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.userId").value(1))
+                .andExpect(jsonPath("$.posts").value(42))
+                .andExpect(jsonPath("$.latestPostId").value(99));
+    }
+}
@@ -0,0 +1,116 @@
+package com.training.blog.feed;
+
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.pagination.PageQuery;
+import com.training.blog.pagination.PageResponse;
+import com.training.blog.repository.PostRepository;
+import com.training.blog.services.PostService;
+import com.training.blog.services.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//a ring of 12 and pages of at most 5, so walking the feed soon runs past what is held in memory
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:feeddb",
+        "blog.feed.capacity=12",
+        "blog.pagination.max-limit=5"
+})
+@DirtiesContext
+class RecentPostsFeedTest {
+
+    @Autowired
+    private RecentPostsFeed recentPostsFeed;
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void testFeedIsNewestFirstAndTheFirstPageSkipsTheDatabase(){
+        User author = userService.createUser(new User("feed-author"));
+        List<Post> created = new ArrayList<>();
+        for(int i = 0; i < 30; i++){
+            created.add(postService.createPost(post("feed post " + i), author.getId()));
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long statements = statistics.getPrepareStatementCount();
+        PageResponse<FeedEntry> first = postService.getFeed(new PageQuery(null, 5));
+        assertEquals(statements, statistics.getPrepareStatementCount());
+        assertEquals(List.of(created.get(29).getId(), created.get(28).getId(), created.get(27).getId(),
+                created.get(26).getId(), created.get(25).getId()), first.getItems().stream().map(FeedEntry::id).toList());
+
+        //following the cursors past the ring gives exactly what the database has, in the same order
+        List<Long> walked = new ArrayList<>();
+        PageResponse<FeedEntry> page = first;
+        while (true){
+            page.getItems().forEach(entry -> walked.add(entry.id()));
+            if(page.getNext() == null){
+                break;
+            }
+            page = postService.getFeed(new PageQuery(page.getNext(), 5));
+        }
+        List<Long> expected = postRepository.findFeed(10, PageRequest.of(0, 1000)).stream().map(FeedEntry::id).toList();
+        assertEquals(expected, walked);
+    }
+
+    @Test
+    void testEditsAndDeletesShowUpAndAShrunkRingIsLoadedAgain(){
+        User author = userService.createUser(new User("feed-editor"));
+        List<Post> created = new ArrayList<>();
+        for(int i = 0; i < 20; i++){
+            created.add(postService.createPost(post("edited post " + i), author.getId()));
+        }
+        Post newest = created.get(19);
+        Post edit = post("edited post renamed");
+        edit.setId(newest.getId());
+        postService.editPost(edit);
+        FeedEntry top = postService.getFeed(new PageQuery(null, 1)).getItems().get(0);
+        assertEquals(newest.getId(), top.id());
+        assertEquals("edited post renamed", top.title());
+        assertEquals(newest.getCreatedAt(), top.createdAt());
+
+        //down to 5 of the 12, one short of a full first page and its look-ahead
+        for(int i = 19; i > 12; i--){
+            postService.deletePost(created.get(i).getId());
+        }
+        assertEquals(12, recentPostsFeed.size());
+        assertEquals(created.get(12).getId(), postService.getFeed(new PageQuery(null, 5)).getItems().get(0).id());
+    }
+
+    @Test
+    void testBackfillPicksUpPostsWrittenBehindItsBack(){
+        User author = userService.createUser(new User("feed-backfill"));
+        Post post = post("written behind the feed");
+        post.setAuthor(author);
+        postRepository.save(post);
+        assertNotEquals(post.getId(), postService.getFeed(new PageQuery(null, 1)).getItems().get(0).id());
+
+        recentPostsFeed.backfill();
+        assertEquals(post.getId(), postService.getFeed(new PageQuery(null, 1)).getItems().get(0).id());
+        postService.deletePost(post.getId());
+    }
+
+    private static Post post(String title){
+        Post post = new Post();
+        post.setTitle(title);
+        post.setBody("body of " + title);
+        return post;
+    }
+}
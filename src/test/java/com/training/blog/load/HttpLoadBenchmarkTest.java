@@ -0,0 +1,62 @@
+package com.training.blog.load;
+
+import com.training.blog.BlogApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//drives a read/write mix at a fixed arrival rate against the full stack on an embedded server and
+//writes per operation percentile reports to target/load-reports/<label>
+//run with: mvn test -Pbenchmark -Dtest=HttpLoadBenchmarkTest [-Dload.rate=200] [-Dload.seconds=30]
+//  [-Dload.mix=getPost=70,userPosts=20,createPost=5,editPost=3,deletePost=2] [-Dload.label=run-name]
+//  [-Dload.baseline=target/load-reports/<earlier run>/summary.csv]
+//other -D application properties (e.g. -Dblog.threads.virtual.enabled=true) reach the embedded server as usual
+@Tag("benchmark")
+class HttpLoadBenchmarkTest {
+
+    @Test
+    void driveMixAtFixedRate() throws Exception {
+        double rate = Double.parseDouble(System.getProperty("load.rate", "200"));
+        Duration duration = Duration.ofSeconds(Long.getLong("load.seconds", 30));
+        Duration warmup = Duration.ofSeconds(Long.getLong("load.warmup-seconds", 5));
+        LoadMix mix = LoadMix.parse(System.getProperty("load.mix",
+                "getPost=70,userPosts=20,createPost=5,editPost=3,deletePost=2"));
+        String label = System.getProperty("load.label",
+                LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(BlogApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:httpload",
+                        "blog.ratelimit.enabled=false",
+                        "logging.level.root=WARN")
+                .run()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            LoadGenerator generator = new LoadGenerator("http://localhost:" + port);
+            generator.seed(Integer.getInteger("load.users", 100), Integer.getInteger("load.posts-per-user", 50));
+            generator.run(mix, rate, warmup);
+            LoadReport report = generator.run(mix, rate, duration);
+
+            Path output = Path.of("target", "load-reports", label);
+            report.write(output);
+            System.out.printf("mix=%s rate=%.0f/s duration=%ds late-dispatches=%d reports=%s%n",
+                    mix, rate, duration.toSeconds(), report.lateDispatches(), output.toAbsolutePath());
+            report.summary().forEach(System.out::println);
+            String baseline = System.getProperty("load.baseline");
+            if(baseline != null){
+                report.compare(Path.of(baseline), System.out);
+            }
+            assertThat(Files.exists(output.resolve("summary.csv"))).isTrue();
+            assertThat(report.responseTimes(Operation.GET_POST).getTotalCount()).isPositive();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.training.blog.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+//open-model load generator: requests are dispatched on a fixed schedule whether or not earlier ones
+//finished, and latency is taken from the scheduled time, so a stalled server can't hide its own
+//queueing by slowing the client down (coordinated omission)
+final class LoadGenerator {
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String base;
+    private final List<Long> userIds = new ArrayList<>();
+    private final List<Long> postIds = new ArrayList<>();
+    private final List<String> postTitles = new ArrayList<>();
+    //only posts created during the run get deleted, the seeded ones stay readable
+    private final ConcurrentLinkedQueue<Long> deletable = new ConcurrentLinkedQueue<>();
+    private final AtomicLong titles = new AtomicLong();
+
+    LoadGenerator(String base){
+        this.base = base;
+    }
+
+    void seed(int users, int postsPerUser) throws IOException, InterruptedException {
+        for(int user = 0; user < users; user++){
+            HttpResponse<String> created = client.send(json("POST", "/api/users",
+                    "{\"username\":\"load-user-" + user + "\"}"), HttpResponse.BodyHandlers.ofString());
+            long userId = objectMapper.readTree(created.body()).get("id").asLong();
+            userIds.add(userId);
+            List<String> batchTitles = new ArrayList<>();
+            StringBuilder posts = new StringBuilder("[");
+            for(int post = 0; post < postsPerUser; post++){
+                String title = "load " + user + "-" + post;
+                batchTitles.add(title);
+                posts.append(post == 0 ? "" : ",")
+                        .append("{\"title\":\"").append(title).append("\",\"body\":\"").append(body(title)).append("\"}");
+            }
+            HttpResponse<String> batch = client.send(json("POST", "/api/posts/" + userId + "/batch",
+                    posts.append(']').toString()), HttpResponse.BodyHandlers.ofString());
+            for(JsonNode item : objectMapper.readTree(batch.body()).get("items")){
+                if(item.has("id")){
+                    postIds.add(item.get("id").asLong());
+                    postTitles.add(batchTitles.get(item.get("index").asInt()));
+                }
+            }
+        }
+    }
+
+    LoadReport run(LoadMix mix, double ratePerSecond, Duration duration){
+        LoadReport report = new LoadReport();
+        long interval = (long) (1_000_000_000L / ratePerSecond);
+        long requests = (long) (ratePerSecond * duration.toNanos() / 1e9);
+        SplittableRandom random = new SplittableRandom(42);
+        //closing the executor waits for the requests still in flight
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            long start = System.nanoTime();
+            for(long i = 0; i < requests; i++){
+                long intendedStart = start + i * interval;
+                long wait = intendedStart - System.nanoTime();
+                if(wait > 0){
+                    LockSupport.parkNanos(wait);
+                } else if(-wait > interval){
+                    report.recordLateDispatch();
+                }
+                Operation operation = mix.next(random);
+                executor.execute(() -> send(operation, intendedStart, report));
+            }
+        }
+        return report;
+    }
+
+    private void send(Operation operation, long intendedStart, LoadReport report){
+        Long toDelete = null;
+        if(operation == Operation.DELETE_POST){
+            toDelete = deletable.poll();
+            if(toDelete == null){
+                operation = Operation.CREATE_POST;
+            }
+        }
+        HttpRequest request = switch (operation) {
+            case GET_POST -> get("/api/posts/" + postIds.get(randomIndex(postIds)));
+            case USER_POSTS -> get("/api/users/" + userIds.get(randomIndex(userIds)) + "/posts?limit=20");
+            case CREATE_POST -> {
+                String title = "load created " + titles.incrementAndGet();
+                yield json("POST", "/api/posts/" + userIds.get(randomIndex(userIds)),
+                        "{\"title\":\"" + title + "\",\"body\":\"" + body(title) + "\"}");
+            }
+            case EDIT_POST -> {
+                int index = randomIndex(postIds);
+                yield json("PUT", "/api/posts/" + postIds.get(index),
+                        "{\"id\":" + postIds.get(index) + ",\"title\":\"" + postTitles.get(index)
+                                + "\",\"body\":\"edited " + System.nanoTime() + "\"}");
+            }
+            case DELETE_POST -> HttpRequest.newBuilder(URI.create(base + "/api/posts/" + toDelete)).DELETE().build();
+        };
+        long actualStart = System.nanoTime();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            long end = System.nanoTime();
+            boolean ok = response.statusCode() / 100 == 2;
+            report.record(operation, intendedStart, actualStart, end, ok);
+            if(ok && operation == Operation.CREATE_POST){
+                deletable.add(objectMapper.readTree(response.body()).get("id").asLong());
+            }
+        } catch (IOException ex){
+            report.record(operation, intendedStart, actualStart, System.nanoTime(), false);
+        } catch (InterruptedException ex){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int randomIndex(List<?> list){
+        return ThreadLocalRandom.current().nextInt(list.size());
+    }
+
+    private static String body(String title){
+        return "Body of " + title + ". Lorem ipsum dolor sit amet, consectetur adipiscing elit.";
+    }
+
+    private HttpRequest get(String path){
+        return HttpRequest.newBuilder(URI.create(base + path)).build();
+    }
+
+    private HttpRequest json(String method, String path, String body){
+        return HttpRequest.newBuilder(URI.create(base + path))
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+}
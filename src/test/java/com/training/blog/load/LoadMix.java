@@ -0,0 +1,59 @@
+package com.training.blog.load;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+//weighted read/write mix, e.g. "getPost=70,userPosts=20,createPost=5,editPost=3,deletePost=2"
+final class LoadMix {
+    private final Operation[] operations;
+    private final int[] cumulative;
+    private final int total;
+
+    private LoadMix(Map<Operation, Integer> weights){
+        operations = weights.keySet().toArray(new Operation[0]);
+        cumulative = new int[operations.length];
+        int sum = 0;
+        for(int i = 0; i < operations.length; i++){
+            sum += weights.get(operations[i]);
+            cumulative[i] = sum;
+        }
+        if(sum <= 0){
+            throw new IllegalArgumentException("The mix needs at least one positive weight");
+        }
+        total = sum;
+    }
+
+    static LoadMix parse(String mix){
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for(String entry : mix.split(",")){
+            String[] parts = entry.trim().split("=");
+            int weight = Integer.parseInt(parts[1].trim());
+            if(weight < 0){
+                throw new IllegalArgumentException("Negative weight for " + parts[0]);
+            }
+            weights.put(Operation.of(parts[0].trim()), weight);
+        }
+        return new LoadMix(weights);
+    }
+
+    Operation next(RandomGenerator random){
+        int pick = random.nextInt(total);
+        for(int i = 0; i < cumulative.length; i++){
+            if(pick < cumulative[i]){
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder mix = new StringBuilder();
+        for(int i = 0; i < operations.length; i++){
+            mix.append(i == 0 ? "" : ",").append(operations[i].key()).append('=')
+                    .append(cumulative[i] - (i == 0 ? 0 : cumulative[i - 1]));
+        }
+        return mix.toString();
+    }
+}
@@ -0,0 +1,122 @@
+package com.training.blog.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+//per operation latency histograms in nanoseconds. `responseTime` is measured from the scheduled send
+//time so queueing behind a slow request is counted, `serviceTime` only from the actual send
+final class LoadReport {
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final long HIGHEST_TRACKABLE = 60_000_000_000L;
+
+    private final Map<Operation, Histogram> responseTimes = new EnumMap<>(Operation.class);
+    private final Map<Operation, Histogram> serviceTimes = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final LongAdder late = new LongAdder();
+
+    LoadReport(){
+        for(Operation operation : Operation.values()){
+            responseTimes.put(operation, new ConcurrentHistogram(HIGHEST_TRACKABLE, 3));
+            serviceTimes.put(operation, new ConcurrentHistogram(HIGHEST_TRACKABLE, 3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    void record(Operation operation, long intendedStart, long actualStart, long end, boolean ok){
+        if(!ok){
+            errors.get(operation).increment();
+            return;
+        }
+        responseTimes.get(operation).recordValue(Math.min(end - intendedStart, HIGHEST_TRACKABLE));
+        serviceTimes.get(operation).recordValue(Math.min(end - actualStart, HIGHEST_TRACKABLE));
+    }
+
+    //the generator couldn't dispatch a request on schedule, a sign the client is the bottleneck
+    void recordLateDispatch(){
+        late.increment();
+    }
+
+    long lateDispatches(){
+        return late.sum();
+    }
+
+    Histogram responseTimes(Operation operation){
+        return responseTimes.get(operation);
+    }
+
+    long errors(Operation operation){
+        return errors.get(operation).sum();
+    }
+
+    //one .hgrm per operation (plottable with the HdrHistogram plotter) and a summary.csv to diff between runs
+    void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for(Operation operation : Operation.values()){
+            Histogram histogram = responseTimes.get(operation);
+            if(histogram.getTotalCount() == 0){
+                continue;
+            }
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(operation.key() + ".hgrm")))) {
+                histogram.outputPercentileDistribution(out, NANOS_PER_MILLI);
+            }
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(operation.key() + "-service.hgrm")))) {
+                serviceTimes.get(operation).outputPercentileDistribution(out, NANOS_PER_MILLI);
+            }
+        }
+        Files.write(directory.resolve("summary.csv"), summary());
+    }
+
+    List<String> summary(){
+        List<String> lines = new ArrayList<>();
+        lines.add("operation,count,errors,mean_ms,p50_ms,p90_ms,p99_ms,p99.9_ms,max_ms,service_p99_ms");
+        for(Operation operation : Operation.values()){
+            Histogram histogram = responseTimes.get(operation);
+            if(histogram.getTotalCount() == 0 && errors(operation) == 0){
+                continue;
+            }
+            lines.add(String.format(Locale.ROOT, "%s,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f",
+                    operation.key(), histogram.getTotalCount(), errors(operation),
+                    histogram.getMean() / NANOS_PER_MILLI,
+                    millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+                    histogram.getMaxValue() / NANOS_PER_MILLI,
+                    millis(serviceTimes.get(operation), 99)));
+        }
+        return lines;
+    }
+
+    //prints the p99 of every operation next to the one from an earlier run's summary.csv
+    void compare(Path baselineSummary, PrintStream out) throws IOException {
+        Map<String, String[]> baseline = new HashMap<>();
+        for(String line : Files.readAllLines(baselineSummary)){
+            String[] columns = line.split(",");
+            baseline.put(columns[0], columns);
+        }
+        for(String line : summary().subList(1, summary().size())){
+            String[] columns = line.split(",");
+            String[] before = baseline.get(columns[0]);
+            if(before == null){
+                continue;
+            }
+            double was = Double.parseDouble(before[6]);
+            double now = Double.parseDouble(columns[6]);
+            out.printf(Locale.ROOT, "%-11s p99 %.3fms -> %.3fms (%+.1f%%)%n",
+                    columns[0], was, now, was == 0 ? 0 : (now - was) * 100 / was);
+        }
+    }
+
+    private static double millis(Histogram histogram, double percentile){
+        return histogram.getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+    }
+}
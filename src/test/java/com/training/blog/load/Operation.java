@@ -0,0 +1,29 @@
+package com.training.blog.load;
+
+//the endpoints the load generator knows how to drive, named as they appear in a mix
+enum Operation {
+    GET_POST("getPost"),
+    USER_POSTS("userPosts"),
+    CREATE_POST("createPost"),
+    EDIT_POST("editPost"),
+    DELETE_POST("deletePost");
+
+    private final String key;
+
+    Operation(String key){
+        this.key = key;
+    }
+
+    String key(){
+        return key;
+    }
+
+    static Operation of(String key){
+        for(Operation operation : values()){
+            if(operation.key.equals(key)){
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation " + key);
+    }
+}
@@ -0,0 +1,80 @@
+package com.training.blog.metrics;
+
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.services.PostService;
+import com.training.blog.services.UserService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:metricsdb")
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@DirtiesContext
+class MetricsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private MeterRegistry registry;
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void testServiceCallsAreTimedWithTheirStatementCount(){
+        User author = userService.createUser(new User("metrics-author"));
+        Post post = new Post();
+        post.setTitle("metrics title");
+        post.setBody("metrics body");
+        postService.createPost(post, author.getId());
+
+        Timer timer = registry.get(ServiceMetricsAspect.CALLS)
+                .tags("service", "PostService", "method", "createPost", "outcome", "SUCCESS", "exception", "none")
+                .timer();
+        assertEquals(1, timer.count());
+        DistributionSummary statements = registry.get(ServiceMetricsAspect.STATEMENTS)
+                .tags("service", "PostService", "method", "createPost")
+                .summary();
+        assertTrue(statements.totalAmount() > 0);
+    }
+
+    @Test
+    void testHandledExceptionsTagTheServiceAndRequestMetrics() throws Exception {
+        mockMvc.perform(get("/api/posts/987654"))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(1, registry.get(ServiceMetricsAspect.CALLS)
+                .tags("method", "getPostVersion", "outcome", "ERROR", "exception", "PostNotFoundException")
+                .timer().count());
+        assertEquals(1, registry.get("http.server.requests")
+                .tags("uri", "/api/posts/{post_id}", "exception", "PostNotFoundException")
+                .timer().count());
+    }
+
+    @Test
+    void testPrometheusScrapeIncludesPoolAndHibernateMetrics() throws Exception {
+        mockMvc.perform(get("/api/users"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("hikaricp_connections_active")))
+                .andExpect(content().string(containsString("hibernate_statements_total")))
+                .andExpect(content().string(containsString("blog_service_calls_seconds_bucket")));
+    }
+}
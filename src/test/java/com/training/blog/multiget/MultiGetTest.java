@@ -0,0 +1,92 @@
+package com.training.blog.multiget;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.training.blog.exceptions.BatchTooLargeException;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.services.PostService;
+import com.training.blog.services.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//chunks of 3 and at most 12 ids, so a short list already takes several IN queries
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:multigetdb",
+        "blog.multiget.chunk-size=3",
+        "blog.multiget.max-ids=12"
+})
+@DirtiesContext
+class MultiGetTest {
+
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private Cache<Long, Post> postCache;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void testCachedPostsSkipTheDatabaseAndTheRestIsReadInChunks(){
+        User author = userService.createUser(new User("multiget-author"));
+        List<Long> ids = new ArrayList<>();
+        for(int i = 0; i < 8; i++){
+            ids.add(postService.createPost(post("multiget post " + i), author.getId()).getId());
+        }
+        postCache.invalidateAll();
+        postService.getPost(ids.get(1));
+        postService.getPost(ids.get(6));
+
+        //out of order, with a duplicate and two ids that were never used
+        List<Long> requested = List.of(ids.get(6), -1L, ids.get(0), ids.get(3), ids.get(1), ids.get(6),
+                ids.get(7), ids.get(2), -2L, ids.get(5), ids.get(4));
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long statements = statistics.getPrepareStatementCount();
+        MultiGetResponse<Post> response = postService.getPostsByIds(requested);
+
+        //8 misses in chunks of 3
+        assertEquals(3, statistics.getPrepareStatementCount() - statements);
+        assertEquals(List.of(ids.get(6), ids.get(0), ids.get(3), ids.get(1), ids.get(7), ids.get(2), ids.get(5), ids.get(4)),
+                response.getItems().stream().map(Post::getId).toList());
+        assertEquals(List.of(-1L, -2L), response.getMissing());
+        assertSame(postCache.getIfPresent(ids.get(1)), response.getItems().get(3));
+
+        //a bulk read leaves the cache as it was
+        assertEquals(2, postCache.estimatedSize());
+    }
+
+    @Test
+    void testUsersComeBackInTheRequestedOrder(){
+        User first = userService.createUser(new User("multiget-first"));
+        User second = userService.createUser(new User("multiget-second"));
+        MultiGetResponse<User> response = userService.getUsersByIds(List.of(second.getId(), -5L, first.getId()));
+        assertEquals(List.of("multiget-second", "multiget-first"),
+                response.getItems().stream().map(User::getUsername).toList());
+        assertEquals(List.of(-5L), response.getMissing());
+    }
+
+    @Test
+    void testTooManyIdsAreTurnedAway(){
+        List<Long> ids = LongStream.rangeClosed(1, 13).boxed().toList();
+        assertThrows(BatchTooLargeException.class, () -> postService.getPostsByIds(ids));
+    }
+
+    private static Post post(String title){
+        Post post = new Post();
+        post.setTitle(title);
+        post.setBody("body of " + title);
+        return post;
+    }
+}
@@ -0,0 +1,104 @@
+package com.training.blog.ratelimit;
+
+import com.training.blog.models.User;
+import com.training.blog.services.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ratelimitdb",
+        "blog.ratelimit.groups.posts.rate=0.01",
+        "blog.ratelimit.groups.posts.burst=3"
+})
+@AutoConfigureMockMvc
+@DirtiesContext
+class RateLimiterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void testBucketRefillsAtItsRateUpToTheBurst(){
+        long second = 1_000_000_000L;
+        TokenBucket bucket = new TokenBucket(2, 3, 0);
+        for(int i = 0; i < 3; i++){
+            assertEquals(0, bucket.tryAcquire(() -> 0));
+        }
+        assertEquals(second / 2, bucket.tryAcquire(() -> 0));
+        assertEquals(0, bucket.tryAcquire(() -> second / 2));
+        assertTrue(bucket.tryAcquire(() -> second / 2) > 0);
+        //a long pause saves up no more than the burst
+        long later = 100 * second;
+        for(int i = 0; i < 3; i++){
+            assertEquals(0, bucket.tryAcquire(() -> later));
+        }
+        assertTrue(bucket.tryAcquire(() -> later) > 0);
+    }
+
+    @Test
+    void testClientOverItsRateGets429WithRetryAfter() throws Exception {
+        User author = userService.createUser(new User("limited-author"));
+        for(int i = 0; i < 3; i++){
+            mockMvc.perform(createPost(author.getId(), "limited " + i, "10.0.0.1"))
+                    .andExpect(status().isCreated());
+        }
+        String retryAfter = mockMvc.perform(createPost(author.getId(), "limited 3", "10.0.0.1"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(jsonPath("$.message").value("TOO_MANY_REQUESTS"))
+                .andReturn().getResponse().getHeader("Retry-After");
+        //one token every 100 seconds
+        assertTrue(Long.parseLong(retryAfter) > 90);
+
+        //another author from another client is not held up
+        User other = userService.createUser(new User("unlimited-author"));
+        mockMvc.perform(createPost(other.getId(), "unlimited", "10.0.0.2"))
+                .andExpect(status().isCreated());
+        //reads aren't limited at all
+        mockMvc.perform(get("/api/posts")
+                        .with(request -> { request.setRemoteAddr("10.0.0.1"); return request; }))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testUserOverItsRateIsLimitedFromEveryClient() throws Exception {
+        User author = userService.createUser(new User("many-clients-author"));
+        for(int i = 0; i < 3; i++){
+            mockMvc.perform(createPost(author.getId(), "many clients " + i, "10.0.1." + i))
+                    .andExpect(status().isCreated());
+        }
+        mockMvc.perform(createPost(author.getId(), "many clients 3", "10.0.1.3"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+        //the client that was turned away got its token back
+        User other = userService.createUser(new User("fresh-author"));
+        for(int i = 0; i < 3; i++){
+            mockMvc.perform(createPost(other.getId(), "fresh " + i, "10.0.1.3"))
+                    .andExpect(status().isCreated());
+        }
+    }
+
+    private static MockHttpServletRequestBuilder createPost(Long authorId, String title, String client){
+        return post("/api/posts/" + authorId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\": \"" + title + "\", \"body\": \"body\"}")
+                .with(request -> {
+                    request.setRemoteAddr(client);
+                    return request;
+                });
+    }
+}
@@ -0,0 +1,96 @@
+package com.training.blog.repository;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//latency of the lookups the indexes from V1__create_schema.sql are there for, first with them and
+//then after dropping them, on the same million users and million posts
+//run with: mvn test -Pbenchmark -Dtest=SchemaIndexBenchmarkTest [-Dbench.rows=1000000]
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:indexbench")
+@DirtiesContext
+class SchemaIndexBenchmarkTest {
+    private static final int AUTHORS = 10_000;
+    //clear of the ids the sample data at startup got from the sequences
+    private static final long OFFSET = 1_000;
+
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void lookupsWithAndWithoutIndexes(){
+        int rows = Integer.getInteger("bench.rows", 1_000_000);
+        long start = System.currentTimeMillis();
+        jdbcTemplate.update("insert into \"user\" (\"id\", \"username\") " +
+                "select x + ?, 'bench-user-' || x from system_range(1, ?)", OFFSET, rows);
+        jdbcTemplate.update("insert into \"post\" (\"id\", \"title\", \"body\", \"author_id\") " +
+                "select x + ?, 'bench post ' || x, 'body of bench post ' || x, mod(x, ?) + 1 + ? " +
+                "from system_range(1, ?)", OFFSET, AUTHORS, OFFSET, rows);
+        jdbcTemplate.execute("analyze");
+        System.out.printf("seeded %d users and %d posts in %d ms%n", rows, rows, System.currentTimeMillis() - start);
+
+        Result[] indexed = measure(rows, 2_000);
+
+        jdbcTemplate.execute("alter table \"post\" drop constraint fk_post_author");
+        jdbcTemplate.execute("drop index \"idx_post_author_id\"");
+        jdbcTemplate.execute("alter table \"post\" drop constraint uk_post_title");
+        jdbcTemplate.execute("alter table \"user\" drop constraint uk_user_username");
+        jdbcTemplate.execute("analyze");
+
+        Result[] scanned = measure(rows, 20);
+
+        System.out.printf("%-18s %12s %12s %12s %12s%n", "query", "indexed p50", "indexed p99", "scan p50", "scan p99");
+        for(int i = 0; i < indexed.length; i++){
+            System.out.printf("%-18s %10.1fus %10.1fus %10.1fus %10.1fus%n", indexed[i].query(),
+                    indexed[i].p50() / 1000.0, indexed[i].p99() / 1000.0,
+                    scanned[i].p50() / 1000.0, scanned[i].p99() / 1000.0);
+            assertTrue(indexed[i].p50() < scanned[i].p50(), indexed[i].query());
+        }
+    }
+
+    private Result[] measure(int rows, int iterations){
+        return new Result[]{
+                time("findByTitle", iterations,
+                        id -> postRepository.findByTitle("bench post " + randomId(rows)).orElseThrow()),
+                time("findByUsername", iterations,
+                        id -> userRepository.findByUsername("bench-user-" + randomId(rows)).orElseThrow()),
+                time("findAllByAuthorId", iterations,
+                        id -> postRepository.findAllByAuthorId(OFFSET + ThreadLocalRandom.current().nextInt(1, AUTHORS + 1)))
+        };
+    }
+
+    private static Result time(String query, int iterations, LongConsumer lookup){
+        //a tenth of the runs again as warm-up, not recorded
+        for(int i = 0; i < Math.max(1, iterations / 10); i++){
+            lookup.accept(i);
+        }
+        long[] nanos = new long[iterations];
+        for(int i = 0; i < iterations; i++){
+            long start = System.nanoTime();
+            lookup.accept(i);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return new Result(query, nanos[iterations / 2], nanos[Math.min(iterations - 1, iterations * 99 / 100)]);
+    }
+
+    private static long randomId(int rows){
+        return ThreadLocalRandom.current().nextLong(1, rows + 1);
+    }
+
+    private record Result(String query, long p50, long p99) {}
+}
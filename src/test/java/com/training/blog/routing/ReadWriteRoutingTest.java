@@ -0,0 +1,117 @@
+package com.training.blog.routing;
+
+import com.training.blog.models.User;
+import com.training.blog.pagination.PageQuery;
+import com.training.blog.services.UserService;
+import jakarta.servlet.http.Cookie;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//three separate H2 databases stand in for a primary and two replicas, nothing replicates between
+//them, so where a row shows up tells which database a read went to. the third replica can't be reached
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary",
+        "blog.datasource.replicas[0].url=" + ReadWriteRoutingTest.REPLICA_ONE,
+        "blog.datasource.replicas[1].url=" + ReadWriteRoutingTest.REPLICA_TWO,
+        "blog.datasource.replicas[2].url=jdbc:h2:file:./target/routing/missing;IFEXISTS=TRUE",
+        "blog.datasource.sticky-window=5s"
+})
+@AutoConfigureMockMvc
+@DirtiesContext
+class ReadWriteRoutingTest {
+    static final String REPLICA_ONE = "jdbc:h2:mem:routing-replica-1;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_TWO = "jdbc:h2:mem:routing-replica-2;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private ReplicaRoutingDataSource routing;
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeAll
+    static void createReplicas(){
+        replica(REPLICA_ONE, "on-replica-one");
+        replica(REPLICA_TWO, "on-replica-two");
+    }
+
+    @BeforeEach
+    void forgetEarlierWrites(){
+        ReadYourWrites.clear();
+    }
+
+    @Test
+    void testUnreachableReplicaIsOutOfRotation(){
+        assertEquals(2, routing.healthyReplicas());
+    }
+
+    @Test
+    void testReadOnlyServiceMethodsAlternateBetweenReplicas(){
+        Set<String> seen = new HashSet<>();
+        for(int i = 0; i < 4; i++){
+            seen.addAll(usernames());
+        }
+        assertEquals(Set.of("on-replica-one", "on-replica-two"), seen);
+    }
+
+    @Test
+    void testWriterReadsItsOwnWriteFromThePrimary(){
+        User created = userService.createUser(new User("written-to-primary"));
+        assertTrue(usernames().contains("written-to-primary"));
+
+        //another thread, or this one after the window, reads the replicas that never got the row
+        ReadYourWrites.clear();
+        assertFalse(usernames().contains("written-to-primary"));
+        //cache fills always come from the primary
+        assertEquals("written-to-primary", userService.getUser(created.getId()).getUsername());
+    }
+
+    @Test
+    void testCookieKeepsTheClientOnThePrimaryAfterAWrite() throws Exception {
+        Cookie cookie = mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"posted-to-primary\"}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getCookie(ReadYourWritesFilter.COOKIE);
+        assertNotNull(cookie);
+
+        String sticky = mockMvc.perform(get("/api/users?limit=100").cookie(cookie))
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(sticky.contains("posted-to-primary"));
+        String other = mockMvc.perform(get("/api/users?limit=100"))
+                .andReturn().getResponse().getContentAsString();
+        assertFalse(other.contains("posted-to-primary"));
+    }
+
+    private List<String> usernames(){
+        PageQuery query = new PageQuery();
+        query.setLimit(100);
+        return userService.getUsers(query).getItems().stream().map(User::getUsername).toList();
+    }
+
+    //the schema a real replica would have replicated, plus one row only this replica has
+    private static void replica(String url, String username){
+        Flyway.configure().dataSource(url, "sa", "").load().migrate();
+        new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""))
+                .update("insert into \"user\" (\"id\", \"username\") values (9001, ?)", username);
+    }
+}
@@ -0,0 +1,114 @@
+package com.training.blog.search;
+
+import com.training.blog.models.User;
+import com.training.blog.repository.UserRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+//run with: mvn test -Pbenchmark -Dtest=PostSearchBenchmarkTest [-Dbench.sizes=100000,1000000]
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:searchbench")
+@DirtiesContext
+class PostSearchBenchmarkTest {
+    private static final int QUERIES = 200;
+    private static final int LIKE_QUERIES = 20;
+    private static final int VOCABULARY = 20_000;
+    private static final int BATCH = 5_000;
+
+    @Autowired
+    private PostSearchIndex index;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void compareIndexWithSqlLike(){
+        User author = userRepository.save(new User("search-benchmark"));
+        int seeded = 0;
+        for(int size : sizes()){
+            seeded = seed(author.getId(), seeded, size);
+            index.rebuild();
+            String[] queries = queries();
+            for(int i = 0; i < QUERIES; i++){
+                index.search(queries[i], 20);
+            }
+
+            long start = System.nanoTime();
+            for(int i = 0; i < QUERIES; i++){
+                index.search(queries[i], 20);
+            }
+            double indexMicros = (System.nanoTime() - start) / 1_000.0 / QUERIES;
+
+            //the baseline has to read every match, ranking needs all of them before the top 20 are known
+            start = System.nanoTime();
+            for(int i = 0; i < LIKE_QUERIES; i++){
+                String pattern = "%" + queries[i] + "%";
+                jdbcTemplate.queryForList("select \"id\" from \"post\" where lower(\"title\") like ? " +
+                        "or lower(\"body\") like ?", Long.class, pattern, pattern);
+            }
+            double likeMicros = (System.nanoTime() - start) / 1_000.0 / LIKE_QUERIES;
+
+            System.out.printf("posts=%d index=%.1fus like=%.1fus speedup=%.1fx%n",
+                    size, indexMicros, likeMicros, likeMicros / indexMicros);
+        }
+    }
+
+    private int seed(Long authorId, int from, int to){
+        Random random = new Random(from);
+        List<Object[]> rows = new ArrayList<>(BATCH);
+        for(int i = from; i < to; i++){
+            rows.add(new Object[]{"title " + i + " " + word(random), sentence(random, 30), authorId});
+            if(rows.size() == BATCH){
+                insert(rows);
+            }
+        }
+        insert(rows);
+        return to;
+    }
+
+    private void insert(List<Object[]> rows){
+        jdbcTemplate.batchUpdate("insert into \"post\" (\"id\", \"title\", \"body\", \"author_id\") " +
+                "values (next value for \"post_seq\", ?, ?, ?)", rows);
+        rows.clear();
+    }
+
+    private String[] queries(){
+        Random random = new Random(42);
+        String[] queries = new String[QUERIES];
+        for(int i = 0; i < QUERIES; i++){
+            queries[i] = word(random);
+        }
+        return queries;
+    }
+
+    private String sentence(Random random, int words){
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < words; i++){
+            builder.append(word(random)).append(' ');
+        }
+        return builder.toString();
+    }
+
+    //skewed so a few words are very common and most are rare, like real text
+    private String word(Random random){
+        int rank = (int) Math.pow(VOCABULARY, random.nextDouble());
+        return "w" + Integer.toString(rank, 36);
+    }
+
+    private int[] sizes(){
+        return Arrays.stream(System.getProperty("bench.sizes", "100000,1000000").split(","))
+                .mapToInt(size -> Integer.parseInt(size.trim()))
+                .sorted()
+                .toArray();
+    }
+}
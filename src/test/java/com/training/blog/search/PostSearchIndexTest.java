@@ -0,0 +1,86 @@
+package com.training.blog.search;
+
+import com.training.blog.models.Post;
+import com.training.blog.repository.PostRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostSearchIndexTest {
+
+    private PostSearchIndex index;
+
+    @BeforeEach
+    void setUp(){
+        index = new PostSearchIndex(Mockito.mock(PostRepository.class));
+    }
+
+    @Test
+    void testTitleMatchesRankAboveBodyMatches(){
+        index.index(post(1L, "Cooking pasta", "Boil water and add salt"));
+        index.index(post(2L, "Travel notes", "We ate pasta in Rome"));
+        List<SearchHit> hits = index.search("pasta", 10);
+        assertEquals(List.of(1L, 2L), hits.stream().map(SearchHit::postId).toList());
+    }
+
+    @Test
+    void testRareTermsWeighMoreThanCommonOnes(){
+        index.index(post(1L, "First", "spring boot spring data"));
+        index.index(post(2L, "Second", "spring hibernate"));
+        index.index(post(3L, "Third", "spring jackson"));
+        List<SearchHit> hits = index.search("spring hibernate", 10);
+        assertEquals(2L, hits.get(0).postId());
+        assertEquals(3, hits.size());
+    }
+
+    @Test
+    void testSearchReturnsOnlyTopK(){
+        for(long id = 1; id <= 50; id++){
+            index.index(post(id, "Post " + id, "shared word" + " repeated".repeat((int) id)));
+        }
+        List<SearchHit> hits = index.search("shared", 5);
+        assertEquals(5, hits.size());
+        for(int i = 1; i < hits.size(); i++){
+            assertTrue(hits.get(i - 1).score() >= hits.get(i).score());
+        }
+    }
+
+    @Test
+    void testReindexReplacesOldTerms(){
+        Post post = post(1L, "Old title", "old body");
+        index.index(post);
+        post.setTitle("New title");
+        post.setBody("new body");
+        index.index(post);
+        assertTrue(index.search("old", 10).isEmpty());
+        assertEquals(1, index.search("new", 10).size());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void testRemovedPostsAreNotFound(){
+        index.index(post(1L, "Hello", "world"));
+        index.index(post(2L, "Hello", "again"));
+        index.remove(1L);
+        index.removeAll(List.of(2L));
+        assertTrue(index.search("hello", 10).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void testTokenizerLowercasesAndDropsPunctuationAndStopWords(){
+        assertEquals(List.of("hello", "world", "42"), Tokenizer.tokenize("Hello, the World! 42"));
+    }
+
+    private Post post(Long id, String title, String body){
+        Post post = new Post();
+        post.setId(id);
+        post.setTitle(title);
+        post.setBody(body);
+        return post;
+    }
+}
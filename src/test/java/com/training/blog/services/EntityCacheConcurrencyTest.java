@@ -0,0 +1,117 @@
+package com.training.blog.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.training.blog.exceptions.PostNotFoundException;
+import com.training.blog.exceptions.UserNotFoundException;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:cachedb")
+@DirtiesContext
+class EntityCacheConcurrencyTest {
+    private static final int READERS = 8;
+    private static final int EDITS = 200;
+
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private Cache<Long, Post> postCache;
+
+    @Test
+    void testNoStaleReadAfterEditWhileReadersHammerTheSamePost() throws Exception {
+        User author = userService.createUser(new User("cache-editor"));
+        Post post = postService.createPost(post("version-0"), author.getId());
+        Long id = post.getId();
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(READERS);
+        List<Future<?>> futures = new ArrayList<>();
+        for(int i = 0; i < READERS; i++){
+            futures.add(readers.submit(() -> {
+                int lastSeen = 0;
+                while (running.get()){
+                    int seen = version(postService.getPost(id));
+                    //readers may lag behind the writer but never go back in time
+                    assertTrue(seen >= lastSeen);
+                    lastSeen = seen;
+                }
+            }));
+        }
+        try {
+            for(int version = 1; version <= EDITS; version++){
+                Post update = post("version-" + version);
+                update.setId(id);
+                postService.editPost(update);
+                assertEquals(version, version(postService.getPost(id)));
+            }
+        } finally {
+            running.set(false);
+            readers.shutdown();
+            assertTrue(readers.awaitTermination(10, TimeUnit.SECONDS));
+        }
+        for(Future<?> future : futures){
+            future.get();
+        }
+        assertTrue(postCache.stats().hitCount() > 0);
+    }
+
+    @Test
+    void testDeletingUserDropsCachedUserAndPosts(){
+        User author = userService.createUser(new User("cache-deleted"));
+        Post first = postService.createPost(post("cascade-1"), author.getId());
+        Post second = postService.createPost(post("cascade-2"), author.getId());
+        userService.getUser(author.getId());
+        postService.getPost(first.getId());
+        postService.getPost(second.getId());
+
+        userService.deleteUser(author.getId());
+
+        assertThrows(UserNotFoundException.class, () -> userService.getUser(author.getId()));
+        assertThrows(PostNotFoundException.class, () -> postService.getPost(first.getId()));
+        assertThrows(PostNotFoundException.class, () -> postService.getPost(second.getId()));
+    }
+
+    @Test
+    void testUpdatedUserIsReloaded(){
+        User user = userService.createUser(new User("cache-before"));
+        assertEquals("cache-before", userService.getUser(user.getId()).getUsername());
+        userService.updateUser(new User("cache-after"), user.getId());
+        assertEquals("cache-after", userService.getUser(user.getId()).getUsername());
+    }
+
+    @Test
+    void testDeletedPostIsNotServedFromCache(){
+        User author = userService.createUser(new User("cache-post-deleter"));
+        Post post = postService.createPost(post("deleted-post"), author.getId());
+        postService.getPost(post.getId());
+        postService.deletePost(post.getId());
+        assertThrows(PostNotFoundException.class, () -> postService.getPost(post.getId()));
+    }
+
+    private Post post(String title){
+        Post post = new Post();
+        post.setTitle(title);
+        post.setBody("body of " + title);
+        return post;
+    }
+
+    private int version(Post post){
+        return Integer.parseInt(post.getTitle().substring("version-".length()));
+    }
+}
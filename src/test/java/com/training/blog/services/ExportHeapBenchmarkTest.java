@@ -0,0 +1,76 @@
+package com.training.blog.services;
+
+import com.training.blog.models.User;
+import com.training.blog.repository.UserRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//the database lives in a file so the only thing on the heap is the export itself
+//run with: mvn test -Pbenchmark -Dtest=ExportHeapBenchmarkTest -DargLine=-Xmx128m [-Dbench.rows=2000000]
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:file:./target/export-bench/blogdb;CACHE_SIZE=8192;LAZY_QUERY_EXECUTION=TRUE",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@DirtiesContext
+class ExportHeapBenchmarkTest {
+    private static final int BATCH = 10_000;
+
+    @Autowired
+    private ExportService exportService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void exportMillionsOfRowsWithConstantHeap(){
+        int rows = Integer.getInteger("bench.rows", 2_000_000);
+        User author = userRepository.save(new User("export-benchmark"));
+        List<Object[]> batch = new ArrayList<>(BATCH);
+        for(int i = 0; i < rows; i++){
+            batch.add(new Object[]{"title " + i, "body of post number " + i, author.getId()});
+            if(batch.size() == BATCH || i == rows - 1){
+                jdbcTemplate.batchUpdate("insert into \"post\" (\"id\", \"title\", \"body\", \"author_id\") " +
+                        "values (next value for \"post_seq\", ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+        long existing = jdbcTemplate.queryForObject("select count(*) from \"post\"", Long.class);
+
+        CountingOutputStream out = new CountingOutputStream();
+        long start = System.nanoTime();
+        long written = exportService.exportPosts(out);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        assertEquals(existing, written);
+        System.out.printf("rows=%d bytes=%d seconds=%.1f rows/s=%.0f maxHeap=%dMB%n",
+                written, out.bytes, seconds, written / seconds,
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax() / (1024 * 1024));
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long bytes;
+
+        @Override
+        public void write(int b){
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len){
+            bytes += len;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.training.blog.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:exportdb")
+@DirtiesContext
+class ExportServiceTest {
+
+    @Autowired
+    private ExportService exportService;
+    @Autowired
+    private PostBatchService postBatchService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void testPostsAreWrittenAsOneJsonObjectPerLineInIdOrder() throws Exception {
+        User author = userService.createUser(new User("export-author"));
+        List<Post> posts = new ArrayList<>();
+        for(int i = 0; i < 2500; i++){
+            Post post = new Post();
+            post.setTitle("export " + i);
+            post.setBody("body " + i);
+            posts.add(post);
+        }
+        postBatchService.createPosts(posts, author.getId());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = exportService.exportPosts(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(written, lines.length);
+        assertTrue(written >= 2500);
+        long lastId = Long.MIN_VALUE;
+        for(String line : lines){
+            JsonNode node = objectMapper.readTree(line);
+            assertTrue(node.get("id").asLong() > lastId);
+            lastId = node.get("id").asLong();
+            assertNotNull(node.get("title"));
+        }
+    }
+
+    @Test
+    void testUsersAreExported(){
+        userService.createUser(new User("exported-user"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = exportService.exportUsers(out);
+        assertEquals(written, out.toString(StandardCharsets.UTF_8).lines().count());
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("\"username\":\"exported-user\""));
+    }
+}
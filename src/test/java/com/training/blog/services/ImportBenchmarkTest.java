@@ -0,0 +1,71 @@
+package com.training.blog.services;
+
+import com.training.blog.imports.ImportSummary;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//the upload is generated on the fly, so the file size doesn't count against the heap
+//run with: mvn test -Pbenchmark -Dtest=ImportBenchmarkTest [-DargLine=-Xmx256m] [-Dbench.rows=500000]
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:file:./target/import-bench/blogdb;CACHE_SIZE=8192",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@DirtiesContext
+class ImportBenchmarkTest {
+    private static final int AUTHORS = 1_000;
+
+    @Autowired
+    private ImportService importService;
+
+    @Test
+    void importThroughput() throws Exception {
+        int rows = Integer.getInteger("bench.rows", 500_000);
+        ImportSummary users = importService.importUsers(new GeneratedNdjson(AUTHORS,
+                i -> "{\"username\":\"bench-author-" + i + "\"}"));
+        assertEquals(AUTHORS, users.getImported());
+
+        ImportSummary posts = importService.importPosts(new GeneratedNdjson(rows,
+                i -> "{\"title\":\"bench post " + i + "\",\"body\":\"body of bench post " + i +
+                        "\",\"author\":\"bench-author-" + (i % AUTHORS) + "\"}"));
+        assertEquals(rows, posts.getImported());
+        System.out.printf("rows=%d millis=%d rows/s=%.0f maxHeap=%dMB%n",
+                rows, posts.getMillis(), rows * 1000.0 / posts.getMillis(),
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax() / (1024 * 1024));
+    }
+
+    private static class GeneratedNdjson extends InputStream {
+        private final int lines;
+        private final IntFunction<String> line;
+        private int next;
+        private byte[] current = new byte[0];
+        private int position;
+
+        GeneratedNdjson(int lines, IntFunction<String> line){
+            this.lines = lines;
+            this.line = line;
+        }
+
+        @Override
+        public int read(){
+            if(position == current.length){
+                if(next == lines){
+                    return -1;
+                }
+                current = (line.apply(next++) + "\n").getBytes(StandardCharsets.UTF_8);
+                position = 0;
+            }
+            return current[position++];
+        }
+    }
+}
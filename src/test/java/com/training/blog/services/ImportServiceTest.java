@@ -0,0 +1,125 @@
+package com.training.blog.services;
+
+import com.training.blog.imports.ImportError;
+import com.training.blog.imports.ImportSummary;
+import com.training.blog.repository.PostRepository;
+import com.training.blog.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:importdb",
+        "blog.import.chunk-size=3",
+        "blog.import.max-errors=2",
+        "blog.import.max-line-length=64"
+})
+@DirtiesContext
+class ImportServiceTest {
+
+    @Autowired
+    private ImportService importService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private UniqueNameRegistry uniqueNames;
+
+    @Test
+    void testUsersAndPostsAreImportedInChunksWithErrorsByLine() throws Exception {
+        ImportSummary users = importService.importUsers(ndjson(
+                "{\"username\":\"import-a\"}",
+                "{\"username\":\"import-b\"}",
+                "",
+                "{\"username\":\"import-c\"}",
+                "{\"username\":\"import-a\"}",
+                "{\"username\":\"import-d\"}"));
+        assertEquals(6, users.getLines());
+        assertEquals(4, users.getImported());
+        assertEquals(1, users.getFailed());
+        assertEquals(5, users.getErrors().get(0).getLine());
+
+        ImportSummary posts = importService.importPosts(ndjson(
+                "{\"title\":\"imported 1\",\"body\":\"b\",\"author\":\"import-a\"}",
+                "{\"title\":\"imported 2\",\"body\":\"b\",\"author\":\"import-b\"}",
+                "{\"title\":\"imported 3\",\"body\":\"b\",\"author\":\"import-a\"}",
+                "{\"title\":\"imported 4\",\"body\":\"b\",\"author\":\"import-c\"}",
+                "{\"title\":\"imported 5\",\"body\":\"b\",\"author\":\"import-d\"}"));
+        assertEquals(5, posts.getImported());
+        assertEquals(0, posts.getFailed());
+        Long authorA = userRepository.findByUsername("import-a").orElseThrow().getId();
+        assertEquals(2, postRepository.countByAuthorId(authorA));
+    }
+
+    @Test
+    void testBadLinesAreReportedAndTheErrorReportIsBounded() throws Exception {
+        importService.importUsers(ndjson("{\"username\":\"import-errors\"}"));
+        ImportSummary summary = importService.importPosts(ndjson(
+                "{\"title\":\"fine\",\"body\":\"b\",\"author\":\"import-errors\"}",
+                "not json",
+                "{\"title\":\"no author\",\"body\":\"b\",\"author\":\"nobody\"}",
+                "{\"title\":\"\",\"body\":\"b\",\"author\":\"import-errors\"}"));
+        assertEquals(1, summary.getImported());
+        assertEquals(3, summary.getFailed());
+        assertEquals(List.of(2L, 3L), summary.getErrors().stream().map(ImportError::getLine).toList());
+        assertTrue(summary.isErrorsTruncated());
+    }
+
+    @Test
+    void testChunkWithUnregisteredDuplicateOnlyFailsThatLine() throws Exception {
+        importService.importUsers(ndjson("{\"username\":\"import-dupes\"}"));
+        importService.importPosts(ndjson("{\"title\":\"taken\",\"body\":\"b\",\"author\":\"import-dupes\"}"));
+        uniqueNames.releaseTitle("taken");
+        ImportSummary summary = importService.importPosts(ndjson(
+                "{\"title\":\"chunk 1\",\"body\":\"b\",\"author\":\"import-dupes\"}",
+                "{\"title\":\"taken\",\"body\":\"b\",\"author\":\"import-dupes\"}",
+                "{\"title\":\"chunk 2\",\"body\":\"b\",\"author\":\"import-dupes\"}"));
+        assertEquals(2, summary.getImported());
+        assertEquals(2, summary.getErrors().get(0).getLine());
+    }
+
+    @Test
+    void testNullAndOverlongLinesAreLineErrors() throws Exception {
+        ImportSummary summary = importService.importUsers(ndjson(
+                "null",
+                "{\"username\":\"" + "x".repeat(100) + "\"}",
+                "{\"username\":\"import-after-null\"}"));
+        assertEquals(3, summary.getLines());
+        assertEquals(1, summary.getImported());
+        assertEquals(List.of(1L, 2L), summary.getErrors().stream().map(ImportError::getLine).toList());
+    }
+
+    @Test
+    void testNamesOfAChunkCutShortByTheClientAreReleased(){
+        //two lines of a chunk of 3 are claimed, then the connection breaks
+        InputStream broken = new SequenceInputStream(ndjson(
+                "{\"username\":\"import-cut-1\"}",
+                "{\"username\":\"import-cut-2\"}",
+                ""), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("connection reset");
+            }
+        });
+        assertThrows(IOException.class, () -> importService.importUsers(broken));
+        assertTrue(uniqueNames.claimUsername("import-cut-1"));
+        assertTrue(uniqueNames.claimUsername("import-cut-2"));
+        uniqueNames.releaseUsername("import-cut-1");
+        uniqueNames.releaseUsername("import-cut-2");
+    }
+
+    private InputStream ndjson(String... lines){
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,124 @@
+package com.training.blog.services;
+
+import com.training.blog.exceptions.NotUniqueException;
+import com.training.blog.exceptions.VersionConflictException;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.patch.PostPatch;
+import com.training.blog.patch.UserPatch;
+import com.training.blog.repository.EntityVersion;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:patchdb")
+@DirtiesContext
+class OptimisticPatchConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int INCREMENTS = 20;
+
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void testConcurrentReadModifyPatchLoopsLoseNoUpdates() throws Exception {
+        User author = userService.createUser(new User("patch-counter"));
+        Post post = postService.createPost(post("counter", "0"), author.getId());
+        runConcurrently(() -> {
+            for(int done = 0; done < INCREMENTS; ){
+                Post current = postService.getPost(post.getId());
+                String next = String.valueOf(Integer.parseInt(current.getBody()) + 1);
+                try {
+                    postService.patchPost(post.getId(), new PostPatch(null, next, current.getVersion()), current.getVersion());
+                    done++;
+                } catch (VersionConflictException ignored){
+                    //someone else got there first, read again and retry
+                }
+            }
+        });
+        Post result = postService.getPost(post.getId());
+        assertEquals(String.valueOf(THREADS * INCREMENTS), result.getBody());
+        assertEquals(post.getVersion() + THREADS * INCREMENTS, result.getVersion());
+    }
+
+    @Test
+    void testOnlyOneEditorWinsFromTheSameVersion() throws Exception {
+        User author = userService.createUser(new User("patch-race"));
+        Post post = postService.createPost(post("race", "original"), author.getId());
+        EntityVersion version = postService.getPostVersion(post.getId());
+        AtomicInteger winners = new AtomicInteger();
+        AtomicInteger losers = new AtomicInteger();
+        AtomicInteger editor = new AtomicInteger();
+        runConcurrently(() -> {
+            String title = "race " + editor.incrementAndGet();
+            try {
+                postService.patchPost(post.getId(), new PostPatch(title, null, null), version.version());
+                winners.incrementAndGet();
+            } catch (VersionConflictException ex){
+                losers.incrementAndGet();
+            }
+        });
+        assertEquals(1, winners.get());
+        assertEquals(THREADS - 1, losers.get());
+        //the losing titles were handed back, the winning one and the original's release are in effect
+        Post result = postService.getPost(post.getId());
+        assertNotEquals("race", result.getTitle());
+        for(int i = 1; i <= THREADS; i++){
+            String title = "race " + i;
+            if(!title.equals(result.getTitle())){
+                assertDoesNotThrow(() -> postService.createPost(post(title, "free"), author.getId()));
+            }
+        }
+        assertDoesNotThrow(() -> postService.createPost(post("race", "free again"), author.getId()));
+        assertThrows(NotUniqueException.class, () -> postService.createPost(post(result.getTitle(), "taken"), author.getId()));
+    }
+
+    @Test
+    void testUserPatchChecksTheVersion(){
+        User user = userService.createUser(new User("patch-user"));
+        User renamed = userService.patchUser(user.getId(), new UserPatch("patch-user-renamed", null), user.getVersion());
+        assertEquals(user.getVersion() + 1, renamed.getVersion());
+        assertThrows(VersionConflictException.class,
+                () -> userService.patchUser(user.getId(), new UserPatch("stale", null), user.getVersion()));
+        assertDoesNotThrow(() -> userService.createUser(new User("patch-user")));
+        assertDoesNotThrow(() -> userService.createUser(new User("stale")));
+    }
+
+    private void runConcurrently(Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for(int i = 0; i < THREADS; i++){
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        for(Future<?> future : futures){
+            future.get();
+        }
+        executor.shutdown();
+    }
+
+    private Post post(String title, String body){
+        Post post = new Post();
+        post.setTitle(title);
+        post.setBody(body);
+        return post;
+    }
+}
@@ -0,0 +1,60 @@
+package com.training.blog.services;
+
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//run with: mvn test -Pbenchmark -Dtest=PostBatchBenchmarkTest [-Dbench.rows=20000]
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:batchbench")
+@DirtiesContext
+class PostBatchBenchmarkTest {
+
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private PostBatchService postBatchService;
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void compareBatchWithSingleInserts(){
+        int rows = Integer.getInteger("bench.rows", 20_000);
+        User author = userService.createUser(new User("batch-benchmark"));
+
+        long start = System.nanoTime();
+        for(Post post : posts("single", rows)){
+            postService.createPost(post, author.getId());
+        }
+        double single = rows / ((System.nanoTime() - start) / 1e9);
+
+        //the endpoint caps a request, so split the same rows the way a client would
+        List<Post> batched = posts("batched", rows);
+        start = System.nanoTime();
+        for(int from = 0; from < rows; from += 10_000){
+            postBatchService.createPosts(batched.subList(from, Math.min(from + 10_000, rows)), author.getId());
+        }
+        double batch = rows / ((System.nanoTime() - start) / 1e9);
+
+        System.out.printf("rows=%d single=%.0f rows/s batch=%.0f rows/s speedup=%.1fx%n",
+                rows, single, batch, batch / single);
+    }
+
+    private List<Post> posts(String prefix, int rows){
+        List<Post> posts = new ArrayList<>(rows);
+        for(int i = 0; i < rows; i++){
+            Post post = new Post();
+            post.setTitle(prefix + " " + i);
+            post.setBody("body " + i);
+            posts.add(post);
+        }
+        return posts;
+    }
+}
@@ -0,0 +1,117 @@
+package com.training.blog.services;
+
+import com.training.blog.batch.BatchItemResult;
+import com.training.blog.batch.BatchResult;
+import com.training.blog.exceptions.BatchTooLargeException;
+import com.training.blog.exceptions.UserNotFoundException;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.repository.PostRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:batchdb",
+        "blog.posts.batch-size=10",
+        "blog.posts.batch-max-items=500"
+})
+@DirtiesContext
+class PostBatchServiceTest {
+
+    @Autowired
+    private PostBatchService postBatchService;
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private UniqueNameRegistry uniqueNames;
+
+    @Test
+    void testEveryValidPostIsInsertedAcrossChunks(){
+        User author = userService.createUser(new User("batch-author"));
+        List<Post> posts = new ArrayList<>();
+        for(int i = 0; i < 95; i++){
+            posts.add(post("batch " + i));
+        }
+        BatchResult result = postBatchService.createPosts(posts, author.getId());
+        assertEquals(95, result.getCreated());
+        assertEquals(0, result.getFailed());
+        assertEquals(95, postRepository.countByAuthorId(author.getId()));
+        for(BatchItemResult item : result.getItems()){
+            assertNotNull(item.getId());
+        }
+    }
+
+    @Test
+    void testInvalidAndDuplicateItemsAreReportedPerItem(){
+        User author = userService.createUser(new User("batch-mixed"));
+        postService.createPost(post("existing title"), author.getId());
+        //in the database but not in the registry, so it is only found when the chunk fails
+        postService.createPost(post("unregistered title"), author.getId());
+        uniqueNames.releaseTitle("unregistered title");
+
+        Post invalid = new Post();
+        invalid.setTitle("no body");
+        List<Post> posts = List.of(
+                post("mixed 1"),
+                invalid,
+                post("existing title"),
+                post("mixed 1"),
+                post("unregistered title"),
+                post("mixed 2"));
+        BatchResult result = postBatchService.createPosts(posts, author.getId());
+
+        List<BatchItemResult.Status> statuses = result.getItems().stream().map(BatchItemResult::getStatus).toList();
+        assertEquals(List.of(
+                BatchItemResult.Status.CREATED,
+                BatchItemResult.Status.INVALID,
+                BatchItemResult.Status.DUPLICATE,
+                BatchItemResult.Status.DUPLICATE,
+                BatchItemResult.Status.DUPLICATE,
+                BatchItemResult.Status.CREATED), statuses);
+        assertEquals(List.of("Body must not be empty"), result.getItems().get(1).getErrors());
+        assertEquals(2, result.getCreated());
+        assertEquals(4, postRepository.countByAuthorId(author.getId()));
+    }
+
+    @Test
+    void testNullItemsAreReportedAsInvalid(){
+        User author = userService.createUser(new User("batch-nulls"));
+        BatchResult result = postBatchService.createPosts(Arrays.asList(null, post("after a null"), null),
+                author.getId());
+
+        assertEquals(List.of(
+                BatchItemResult.Status.INVALID,
+                BatchItemResult.Status.CREATED,
+                BatchItemResult.Status.INVALID), result.getItems().stream().map(BatchItemResult::getStatus).toList());
+        assertEquals(List.of("Expected a JSON object"), result.getItems().get(0).getErrors());
+        assertEquals(2, result.getItems().get(2).getIndex());
+        assertEquals(1, postRepository.countByAuthorId(author.getId()));
+    }
+
+    @Test
+    void testUnknownAuthorAndOversizedBatchesAreRejected(){
+        assertThrows(UserNotFoundException.class, () -> postBatchService.createPosts(List.of(post("orphan")), -1L));
+        List<Post> tooMany = Collections.nCopies(501, post("too many"));
+        assertThrows(BatchTooLargeException.class, () -> postBatchService.createPosts(tooMany, -1L));
+    }
+
+    private Post post(String title){
+        Post post = new Post();
+        post.setTitle(title);
+        post.setBody("body of " + title);
+        return post;
+    }
+}
@@ -0,0 +1,118 @@
+package com.training.blog.services;
+
+import com.training.blog.exceptions.IngestionQueueFullException;
+import com.training.blog.ingest.PostIngestion;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//sustained post creation from many concurrent clients, one transaction per post against the
+//write-behind queue. the database is a file with WRITE_DELAY=0, so every commit reaches the file
+//run with: mvn test -Pbenchmark -Dtest=PostIngestBenchmarkTest [-Dbench.posts=20000] [-Dbench.clients=32]
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:file:./target/ingest-bench/blogdb;WRITE_DELAY=0",
+        "spring.flyway.clean-disabled=false",
+        "spring.flyway.clean-on-validation-error=true",
+        "blog.posts.ingest.queue-capacity=5000"
+})
+@DirtiesContext
+class PostIngestBenchmarkTest {
+
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private PostIngestService postIngestService;
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void syncAgainstWriteBehind() throws Exception {
+        int posts = Integer.getInteger("bench.posts", 20_000);
+        int clients = Integer.getInteger("bench.clients", 32);
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        User author = userService.createUser(new User("ingest-bench-" + run));
+
+        long syncMillis = run(posts, clients, i -> postService.createPost(post(run + " sync " + i), author.getId()));
+
+        Queue<PostIngestion> ingestions = new ConcurrentLinkedQueue<>();
+        AtomicLong rejected = new AtomicLong();
+        long asyncMillis = run(posts, clients, i -> {
+            //a well-behaved client backs off when the queue is full
+            while (true){
+                try {
+                    ingestions.add(postIngestService.submit(post(run + " async " + i), author.getId()));
+                    return;
+                } catch (IngestionQueueFullException ex){
+                    rejected.incrementAndGet();
+                    sleep(10);
+                }
+            }
+        });
+        long acceptedMillis = asyncMillis;
+        long start = System.currentTimeMillis() - asyncMillis;
+        while (ingestions.stream().anyMatch(ingestion -> ingestion.getStatus() == PostIngestion.Status.QUEUED)){
+            sleep(5);
+        }
+        long writtenMillis = System.currentTimeMillis() - start;
+        assertEquals(posts, ingestions.stream().filter(i -> i.getStatus() == PostIngestion.Status.CREATED).count());
+
+        System.out.printf("posts=%d clients=%d%n", posts, clients);
+        System.out.printf("sync:  %6d ms %8.0f posts/s%n", syncMillis, posts * 1000.0 / syncMillis);
+        System.out.printf("async: %6d ms %8.0f posts/s accepted, %6d ms %8.0f posts/s written, %d rejections%n",
+                acceptedMillis, posts * 1000.0 / acceptedMillis, writtenMillis, posts * 1000.0 / writtenMillis,
+                rejected.get());
+    }
+
+    private static long run(int posts, int clients, Consumer<Integer> create) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        long start = System.currentTimeMillis();
+        List<Future<?>> futures = new ArrayList<>();
+        for(int c = 0; c < clients; c++){
+            int client = c;
+            futures.add(pool.submit(() -> {
+                for(int i = client; i < posts; i += clients){
+                    create.accept(i);
+                }
+            }));
+        }
+        for(Future<?> future : futures){
+            future.get();
+        }
+        long millis = System.currentTimeMillis() - start;
+        pool.shutdown();
+        return millis;
+    }
+
+    private static void sleep(long millis){
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Post post(String title){
+        Post post = new Post();
+        post.setTitle(title);
+        post.setBody("body of " + title);
+        return post;
+    }
+}
@@ -0,0 +1,96 @@
+package com.training.blog.services;
+
+import com.training.blog.exceptions.IngestionQueueFullException;
+import com.training.blog.exceptions.NotUniqueException;
+import com.training.blog.exceptions.UserNotFoundException;
+import com.training.blog.ingest.PostIngestion;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.repository.PostRepository;
+import com.training.blog.stats.AuthorStatistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ingestdb",
+        "blog.posts.ingest.queue-capacity=1000"
+})
+@DirtiesContext
+class PostIngestServiceTest {
+    private static final int POSTS = 300;
+
+    @Autowired
+    private PostIngestService postIngestService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private AuthorStatistics authorStatistics;
+    @Autowired
+    private UniqueNameRegistry uniqueNames;
+
+    @Test
+    void testQueuedPostsAreWrittenAndTracked() throws Exception {
+        User author = userService.createUser(new User("ingesting"));
+        List<PostIngestion> ingestions = new ArrayList<>();
+        for(int i = 0; i < POSTS; i++){
+            ingestions.add(postIngestService.submit(post("ingested " + i), author.getId()));
+        }
+        awaitFinished(ingestions);
+
+        for(PostIngestion ingestion : ingestions){
+            assertEquals(PostIngestion.Status.CREATED, ingestion.getStatus(), ingestion.getError());
+            assertSame(ingestion, postIngestService.getIngestion(ingestion.getId()));
+            assertEquals(ingestion.getTitle(), postRepository.findById(ingestion.getPostId()).orElseThrow().getTitle());
+        }
+        assertEquals(POSTS, authorStatistics.get(author.getId()).posts());
+    }
+
+    @Test
+    void testBadPostsAreTurnedAwayBeforeQueueing(){
+        User author = userService.createUser(new User("ingest-checked"));
+        postIngestService.submit(post("ingest taken"), author.getId());
+        assertThrows(NotUniqueException.class, () -> postIngestService.submit(post("ingest taken"), author.getId()));
+        assertThrows(UserNotFoundException.class, () -> postIngestService.submit(post("ingest orphan"), -1L));
+    }
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    void testStopWritesOutTheQueueAndRefusesMore() throws Exception {
+        User author = userService.createUser(new User("ingest-shutdown"));
+        List<PostIngestion> ingestions = new ArrayList<>();
+        for(int i = 0; i < POSTS; i++){
+            ingestions.add(postIngestService.submit(post("flushed " + i), author.getId()));
+        }
+        postIngestService.stop();
+
+        assertTrue(ingestions.stream().allMatch(ingestion -> ingestion.getStatus() == PostIngestion.Status.CREATED));
+        assertThrows(IngestionQueueFullException.class,
+                () -> postIngestService.submit(post("after shutdown"), author.getId()));
+        //the refused title is free again
+        assertTrue(uniqueNames.claimTitle("after shutdown"));
+    }
+
+    private static void awaitFinished(List<PostIngestion> ingestions) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (ingestions.stream().anyMatch(ingestion -> ingestion.getStatus() == PostIngestion.Status.QUEUED)
+                && System.currentTimeMillis() < deadline){
+            Thread.sleep(20);
+        }
+    }
+
+    private static Post post(String title){
+        Post post = new Post();
+        post.setTitle(title);
+        post.setBody("body of " + title);
+        return post;
+    }
+}
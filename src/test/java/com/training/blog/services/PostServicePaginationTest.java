@@ -0,0 +1,141 @@
+package com.training.blog.services;
+
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.pagination.Cursors;
+import com.training.blog.pagination.PageQuery;
+import com.training.blog.pagination.PageResponse;
+import com.training.blog.repository.PostSummary;
+import com.training.blog.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.datasource.url=jdbc:h2:mem:paginationdb",
+        "blog.posts.excerpt-length=40"
+})
+@DirtiesContext
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PostServicePaginationTest {
+    private static final int SEEDED_POSTS = 20_000;
+    private static final int LIMIT = 50;
+
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeAll
+    void seed(){
+        User author = userRepository.save(new User("pagination-author"));
+        List<Object[]> rows = new ArrayList<>();
+        for(int i = 0; i < SEEDED_POSTS; i++){
+            rows.add(new Object[]{"title-" + i, "body-" + i, author.getId()});
+        }
+        jdbcTemplate.batchUpdate("insert into \"post\" (\"id\", \"title\", \"body\", \"author_id\") " +
+                "values (next value for \"post_seq\", ?, ?, ?)", rows);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void testFirstAndDeepPagesCostTheSame(){
+        statistics.clear();
+        PageResponse<Post> first = postService.getPosts(new PageQuery(null, LIMIT));
+        long firstQueries = statistics.getPrepareStatementCount();
+        long firstLoads = statistics.getEntityLoadCount();
+
+        Long deepId = jdbcTemplate.queryForObject("select \"id\" from \"post\" order by \"id\" desc " +
+                "limit 1 offset " + LIMIT * 2, Long.class);
+        statistics.clear();
+        PageResponse<Post> deep = postService.getPosts(new PageQuery(Cursors.encode(deepId), LIMIT));
+
+        assertEquals(LIMIT, first.getItems().size());
+        assertEquals(LIMIT, deep.getItems().size());
+        assertEquals(firstQueries, statistics.getPrepareStatementCount());
+        assertEquals(firstLoads, statistics.getEntityLoadCount());
+        //a slice reads one extra row to know whether there is a next page
+        assertEquals(LIMIT + 1, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void testMaxLimitIsEnforced(){
+        PageResponse<Post> page = postService.getPosts(new PageQuery(null, 10_000));
+        assertEquals(100, page.getItems().size());
+    }
+
+    @Test
+    void testTotalIsOnlyCountedWhenAsked(){
+        PageQuery query = new PageQuery(null, 10);
+        assertNull(postService.getPosts(query).getTotal());
+        query.setCount(true);
+        assertEquals(jdbcTemplate.queryForObject("select count(*) from \"post\"", Long.class),
+                postService.getPosts(query).getTotal());
+    }
+
+    @Test
+    void testWalkingTheCursorVisitsEveryPostOnceInIdOrder(){
+        long total = jdbcTemplate.queryForObject("select count(*) from \"post\"", Long.class);
+        long visited = 0;
+        long lastId = Long.MIN_VALUE;
+        String cursor = null;
+        do {
+            PageResponse<Post> page = postService.getPosts(new PageQuery(cursor, 100));
+            for(Post post : page.getItems()){
+                assertTrue(post.getId() > lastId);
+                lastId = post.getId();
+                visited++;
+            }
+            cursor = page.getNext();
+        } while (cursor != null);
+        assertEquals(total, visited);
+    }
+
+    @Test
+    void testSummariesSelectABoundedExcerptWithoutLoadingEntities(){
+        User author = userRepository.save(new User("summary-author"));
+        jdbcTemplate.update("insert into \"post\" (\"id\", \"title\", \"body\", \"author_id\") " +
+                "values (next value for \"post_seq\", ?, ?, ?)", "long body", "x".repeat(250), author.getId());
+
+        statistics.clear();
+        PageResponse<PostSummary> page = userService.getUserPostSummaries(author.getId(), new PageQuery(null, LIMIT));
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(1, page.getItems().size());
+        PostSummary summary = page.getItems().get(0);
+        assertEquals("long body", summary.title());
+        assertEquals(author.getId(), summary.authorId());
+        assertEquals("x".repeat(40), summary.excerpt());
+    }
+
+    @Test
+    void testSummaryPagesFollowTheSameCursorsAsEntityPages(){
+        PageResponse<Post> posts = postService.getPosts(new PageQuery(null, LIMIT));
+        PageResponse<PostSummary> summaries = postService.getPostSummaries(new PageQuery(null, LIMIT));
+        assertEquals(posts.getNext(), summaries.getNext());
+        assertEquals(posts.getItems().stream().map(Post::getId).toList(),
+                summaries.getItems().stream().map(PostSummary::id).toList());
+        PageResponse<PostSummary> second = postService.getPostSummaries(new PageQuery(summaries.getNext(), LIMIT));
+        assertTrue(second.getItems().get(0).id() > summaries.getItems().get(LIMIT - 1).id());
+    }
+}
@@ -0,0 +1,140 @@
+package com.training.blog.services;
+
+import com.training.blog.exceptions.NotUniqueException;
+import com.training.blog.exceptions.UserNotFoundException;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:uniquedb")
+@DirtiesContext
+class UniquenessConcurrencyTest {
+    private static final int THREADS = 32;
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private UniqueNameRegistry uniqueNames;
+
+    @Test
+    void testOnlyOneOfManyConcurrentCreatesOfTheSameUsernameWins() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        runConcurrently(() -> {
+            try {
+                userService.createUser(new User("hammered"));
+                created.incrementAndGet();
+            } catch (NotUniqueException ex){
+                rejected.incrementAndGet();
+            }
+        });
+        assertEquals(1, created.get());
+        assertEquals(THREADS - 1, rejected.get());
+        assertTrue(userRepository.findByUsername("hammered").isPresent());
+        assertEquals(1, userRepository.findAllUsernames().stream().filter("hammered"::equals).count());
+    }
+
+    @Test
+    void testOnlyOneOfManyConcurrentCreatesOfTheSameTitleWins() throws Exception {
+        User author = userService.createUser(new User("title-hammer"));
+        AtomicInteger created = new AtomicInteger();
+        runConcurrently(() -> {
+            try {
+                postService.createPost(post("hammered title"), author.getId());
+                created.incrementAndGet();
+            } catch (NotUniqueException ignored){
+            }
+        });
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    void testDatabaseConstraintCatchesNamesTheRegistryMissed(){
+        userService.createUser(new User("unknown-to-registry"));
+        uniqueNames.releaseUsername("unknown-to-registry");
+        assertThrows(NotUniqueException.class, () -> userService.createUser(new User("unknown-to-registry")));
+
+        User author = userService.createUser(new User("registry-title-author"));
+        postService.createPost(post("unknown title"), author.getId());
+        uniqueNames.releaseTitle("unknown title");
+        assertThrows(NotUniqueException.class, () -> postService.createPost(post("unknown title"), author.getId()));
+    }
+
+    @Test
+    void testNamesAreFreedByRenamesAndDeletes(){
+        User user = userService.createUser(new User("renamed-from"));
+        userService.updateUser(new User("renamed-to"), user.getId());
+        assertDoesNotThrow(() -> userService.createUser(new User("renamed-from")));
+        assertThrows(NotUniqueException.class, () -> userService.createUser(new User("renamed-to")));
+
+        Post post = postService.createPost(post("freed title"), user.getId());
+        userService.deleteUser(user.getId());
+        User other = userService.createUser(new User("renamed-to"));
+        assertDoesNotThrow(() -> postService.createPost(post("freed title"), other.getId()));
+        assertNotNull(post.getId());
+    }
+
+    @Test
+    void testPostsCreatedWhileTheirAuthorIsDeletedDontKeepTheirTitles() throws Exception {
+        User author = userService.createUser(new User("deleted-while-posting"));
+        AtomicInteger next = new AtomicInteger();
+        runConcurrently(() -> {
+            int n = next.getAndIncrement();
+            try {
+                if(n == THREADS / 2){
+                    userService.deleteUser(author.getId());
+                }else{
+                    postService.createPost(post("racing title " + n), author.getId());
+                }
+            } catch (UserNotFoundException ignored){
+            }
+        });
+        //whichever side won, no post is left behind holding its title
+        for(int n = 0; n < THREADS; n++){
+            assertTrue(uniqueNames.claimTitle("racing title " + n), "racing title " + n);
+        }
+    }
+
+    private void runConcurrently(Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for(int i = 0; i < THREADS; i++){
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        for(Future<?> future : futures){
+            future.get();
+        }
+        executor.shutdown();
+    }
+
+    private Post post(String title){
+        Post post = new Post();
+        post.setTitle(title);
+        post.setBody("body of " + title);
+        return post;
+    }
+}
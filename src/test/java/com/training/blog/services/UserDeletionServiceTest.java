@@ -0,0 +1,97 @@
+package com.training.blog.services;
+
+import com.training.blog.deletion.UserDeletion;
+import com.training.blog.exceptions.PostNotFoundException;
+import com.training.blog.exceptions.UserNotFoundException;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.repository.PostRepository;
+import com.training.blog.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:deletiondb",
+        "blog.users.delete-chunk-size=100"
+})
+@DirtiesContext
+class UserDeletionServiceTest {
+    private static final int POSTS = 1050;
+
+    @Autowired
+    private UserDeletionService userDeletionService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private PostBatchService postBatchService;
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void testAsyncDeletionRemovesPostsInChunksAndReportsProgress() throws Exception {
+        User author = userService.createUser(new User("prolific"));
+        User other = userService.createUser(new User("bystander"));
+        List<Post> posts = new ArrayList<>();
+        for(int i = 0; i < POSTS; i++){
+            posts.add(post("prolific " + i));
+        }
+        postBatchService.createPosts(posts, author.getId());
+        Post kept = postService.createPost(post("kept"), other.getId());
+
+        UserDeletion deletion = userDeletionService.start(author.getId());
+        assertEquals(POSTS, deletion.getPostsTotal());
+        assertSame(deletion, userDeletionService.start(author.getId()));
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (deletion.getStatus() == UserDeletion.Status.RUNNING && System.currentTimeMillis() < deadline){
+            Thread.sleep(20);
+        }
+
+        assertEquals(UserDeletion.Status.COMPLETED, deletion.getStatus(), deletion.getError());
+        assertEquals(POSTS, deletion.getPostsDeleted());
+        assertNotNull(deletion.getFinishedAt());
+        assertSame(deletion, userDeletionService.getDeletion(deletion.getId()));
+        assertFalse(userRepository.existsById(author.getId()));
+        assertEquals(0, postRepository.countByAuthorId(author.getId()));
+        assertEquals(kept.getTitle(), postService.getPost(kept.getId()).getTitle());
+        //names were handed back to the registry
+        User again = userService.createUser(new User("prolific"));
+        assertDoesNotThrow(() -> postService.createPost(post("prolific 7"), again.getId()));
+    }
+
+    @Test
+    void testDeletingMissingIdsIsReportedAsNotFound(){
+        assertThrows(PostNotFoundException.class, () -> postService.deletePost(424242L));
+        assertThrows(UserNotFoundException.class, () -> userService.deleteUser(424242L));
+        assertThrows(UserNotFoundException.class, () -> userDeletionService.start(424242L));
+    }
+
+    @Test
+    void testDeletingARenamedPostReleasesTheCurrentTitle(){
+        User author = userService.createUser(new User("rename-then-delete"));
+        Post post = postService.createPost(post("before rename"), author.getId());
+        Post edit = post("after rename");
+        edit.setId(post.getId());
+        postService.editPost(edit);
+        postService.deletePost(post.getId());
+        assertDoesNotThrow(() -> postService.createPost(post("after rename"), author.getId()));
+        assertDoesNotThrow(() -> postService.createPost(post("before rename"), author.getId()));
+    }
+
+    private Post post(String title){
+        Post post = new Post();
+        post.setTitle(title);
+        post.setBody("body of " + title);
+        return post;
+    }
+}
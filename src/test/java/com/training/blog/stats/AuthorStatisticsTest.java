@@ -0,0 +1,123 @@
+package com.training.blog.stats;
+
+import com.training.blog.exceptions.UserNotFoundException;
+import com.training.blog.models.Post;
+import com.training.blog.models.User;
+import com.training.blog.repository.PostRepository;
+import com.training.blog.services.PostBatchService;
+import com.training.blog.services.PostService;
+import com.training.blog.services.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:authorstatsdb")
+@DirtiesContext
+class AuthorStatisticsTest {
+
+    @Autowired
+    private AuthorStatistics authorStatistics;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private PostBatchService postBatchService;
+    @Autowired
+    private PostRepository postRepository;
+
+    @Test
+    void testCountsFollowCreatesAndDeletes(){
+        User author = userService.createUser(new User("counted"));
+        assertEquals(new AuthorStats(author.getId(), 0, null), userService.getUserStats(author.getId()));
+
+        Post first = postService.createPost(post("counted first"), author.getId());
+        postBatchService.createPosts(List.of(post("counted second"), post("counted third")), author.getId());
+        Post latest = postService.createPost(post("counted fourth"), author.getId());
+        assertEquals(new AuthorStats(author.getId(), 4, latest.getId()), userService.getUserStats(author.getId()));
+
+        postService.deletePost(first.getId());
+        assertEquals(new AuthorStats(author.getId(), 3, latest.getId()), userService.getUserStats(author.getId()));
+
+        //deleting the newest post looks the next newest up
+        postService.deletePost(latest.getId());
+        AuthorStats stats = userService.getUserStats(author.getId());
+        assertEquals(2, stats.posts());
+        assertEquals(postRepository.findLatestIdByAuthorId(author.getId()), stats.latestPostId());
+
+        userService.deleteUser(author.getId());
+        assertNull(authorStatistics.get(author.getId()));
+        assertThrows(UserNotFoundException.class, () -> userService.getUserStats(author.getId()));
+    }
+
+    @Test
+    void testReconcileCorrectsDriftOfQuietAuthors(){
+        User author = userService.createUser(new User("drifting"));
+        Post created = postService.createPost(post("drifting first"), author.getId());
+        //a post the statistics never heard of
+        Post unseen = post("drifting unseen");
+        unseen.setAuthor(author);
+        postRepository.save(unseen);
+        assertEquals(1, userService.getUserStats(author.getId()).posts());
+
+        authorStatistics.reconcile();
+
+        assertEquals(new AuthorStats(author.getId(), 2, Math.max(created.getId(), unseen.getId())),
+                userService.getUserStats(author.getId()));
+    }
+
+    @Test
+    void testReconcileLeavesAuthorsWithWritesInFlightAlone(){
+        User author = userService.createUser(new User("busy"));
+        postService.createPost(post("busy first"), author.getId());
+        authorStatistics.beginWrite(author.getId());
+        try {
+            Post inFlight = post("busy in flight");
+            inFlight.setAuthor(author);
+            postRepository.save(inFlight);
+
+            authorStatistics.reconcile();
+            assertEquals(1, authorStatistics.get(author.getId()).posts());
+
+            authorStatistics.recordCreated(author.getId(), inFlight.getId());
+        } finally {
+            authorStatistics.endWrite(author.getId());
+        }
+        assertEquals(2, authorStatistics.get(author.getId()).posts());
+    }
+
+    @Test
+    void testWritesInFlightWhenTheUserIsDeletedDontBringItsStatisticsBack(){
+        User author = userService.createUser(new User("deleted mid-write"));
+        Post post = postService.createPost(post("deleted mid-write post"), author.getId());
+
+        //a post deletion that began before the user went and finishes after removeAuthor
+        authorStatistics.beginWrite(author.getId());
+        try {
+            userService.deleteUser(author.getId());
+            authorStatistics.recordDeleted(author.getId(), List.of(post.getId()));
+        } finally {
+            authorStatistics.endWrite(author.getId());
+        }
+        assertNull(authorStatistics.get(author.getId()));
+        assertThrows(UserNotFoundException.class, () -> userService.getUserStats(author.getId()));
+
+        //and one that only began after the user was gone
+        authorStatistics.beginWrite(author.getId());
+        authorStatistics.recordDeleted(author.getId(), List.of(post.getId()));
+        authorStatistics.endWrite(author.getId());
+        assertNull(authorStatistics.get(author.getId()));
+    }
+
+    private static Post post(String title){
+        Post post = new Post();
+        post.setTitle(title);
+        post.setBody("body of " + title);
+        return post;
+    }
+}